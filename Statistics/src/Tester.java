@@ -1,5 +1,18 @@
 import statistics.*;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javafx.animation.AnimationTimer;
 import javafx.application.*;
 import javafx.stage.*;
 import javafx.scene.*;
@@ -9,56 +22,307 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
 
+/**
+ * A load harness for {@link LineGraph LineGraph}.<br/>
+ * Feeds synthetic data into a configurable amount of graphs at a fixed
+ * rate for a fixed duration and reports render latencies, frame drops,
+ * heap growth and garbage collection, so that runs can be compared.
+ * <br/>
+ * Parameters, all optional:
+ * <ul>
+ * <li><code>--graphs=M</code> amount of graphs (default 4)</li>
+ * <li><code>--charts=C</code> amount of line graphs to spread the
+ * 	graphs across (default 1)</li>
+ * <li><code>--rate=N</code> points per second for each graph
+ * 	(default 100)</li>
+ * <li><code>--duration=S</code> seconds to run for (default 30)</li>
+ * <li><code>--window=W</code> seconds visible on the X-axis, scrolling
+ * 	with the data (default 10)</li>
+ * <li><code>--scale-changes=true</code> periodically rescales
+ * 	the Y-axis</li>
+ * <li><code>--headless=true</code> does not show the stage. Together
+ * 	with <code>-Dglass.platform=Monocle -Dmonocle.platform=Headless</code>
+ * 	no display is needed.</li>
+ * <li><code>--shared=PATH</code> creates a {@link SharedSeriesBuffer
+ * 	SharedSeriesBuffer} in the file and adds a graph fed by it</li>
+ * <li><code>--produce=PATH</code> starts no line graph, but writes into
+ * 	the buffer created by another process with <code>--shared</code>,
+ * 	at <code>--rate</code> for <code>--duration</code></li>
+ * </ul>
+ * Two local processes are tested by starting
+ * <code>Tester --shared=/tmp/ring</code> first and
+ * <code>Tester --produce=/tmp/ring</code> afterwards.<br/>
+ * The latency is the time between a change of a line graph and its
+ * render, thus the latency of the oldest point included in a render.
+ * @author Mario Schaeper
+ */
 @SuppressWarnings("restriction")
 public class Tester extends Application {
-	private static StackPane layout = new StackPane();
-	private static LineGraph graph = new LineGraph(50, 350, 600, 300, 0, 25, 0, 40);
-
-	public static void main(String...args) {
-		graph.setMarking(LineGraph.marking(6, 11, 2, 0, 2, 0, 6,
-				Font.font("verdana", FontWeight.LIGHT, FontPosture.REGULAR, 10)));
-		graph.addGraph(new double[][] {{0, 0}, {1, 1}, {2, 4}}, Color.RED);
-		try {
-			Thread t = new Thread() {
-				@Override
-				public void run() {
-					for (int i=0;i<25;i++) {
-						if (i%2==1) {
-							graph.setYScale(graph.getYStart(), graph.getYEnd()-1);
-						}
-						try {
-							sleep(600);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-						try {
-							graph.extendGraph(0, (i+3)<24?(3+i):26, i==5?50:8+i);
-						} catch (Exception e) {
-							e.printStackTrace();
-						}
+	private static final long FRAME = 1_000_000_000L / 60;
+	private final ArrayList<LineGraph> charts = new ArrayList<>();
+	private final AtomicLong ingested = new AtomicLong(0);
+	private long[] latencies = new long[1024];
+	private int latencyCount = 0;
+	private long frames = 0;
+	private long droppedFrames = 0;
+	private long lastFrame = 0;
+
+	public static void main(String...args) throws Exception {
+		final Map<String, String> parameters = new HashMap<>();
+		for (String arg : args) {
+			final int split = arg.indexOf('=');
+			if (arg.startsWith("--") && split > 2) {
+				parameters.put(arg.substring(2, split), arg.substring(split + 1));
+			}
+		}
+		if (parameters.containsKey("produce")) {
+			Tester.produceShared(
+					parameters.get("produce"),
+					Double.parseDouble(parameters.getOrDefault("rate", "100")),
+					Double.parseDouble(
+						parameters.getOrDefault("duration", "30")));
+			return;
+		}
+		launch(args);
+	}
+
+	/**
+	 * Writes a random walk into a shared series buffer at the given rate,
+	 * with the seconds since the start as X-values.
+	 */
+	private static void produceShared(String path, double rate, double duration)
+			throws Exception {
+		try (SharedSeriesBuffer buffer = SharedSeriesBuffer.open(
+				Paths.get(path))) {
+			final Random random = new Random(1);
+			final long start = System.nanoTime();
+			final long end = start + (long)(duration * 1e9);
+			long produced = 0;
+			long rejected = 0;
+			double value = 0;
+			for (long now = start; now < end; now = System.nanoTime()) {
+				final long due = (long)((now - start) / 1e9 * rate);
+				for (; produced < due; produced++) {
+					value = Math.max(-50, Math.min(50,
+							value + random.nextGaussian()));
+					if (!buffer.offer(produced / rate, value)) {
+						rejected++;
 					}
 				}
-			};
-			try {
-				t.start();
-			} catch (IllegalThreadStateException e) {
-				e.printStackTrace();
+				LockSupport.parkNanos(1_000_000);
+			}
+			System.out.println("points.offered=" + produced);
+			System.out.println("points.rejected=" + rejected);
+		}
+	}
+
+	@Override
+	public void start(Stage primaryStage) throws Exception {
+		final Map<String, String> parameters = this.getParameters().getNamed();
+		final int graphs = Integer.parseInt(
+				parameters.getOrDefault("graphs", "4"));
+		final int chartAmount = Math.max(1, Math.min(graphs, Integer.parseInt(
+				parameters.getOrDefault("charts", "1"))));
+		final double rate = Double.parseDouble(
+				parameters.getOrDefault("rate", "100"));
+		final double duration = Double.parseDouble(
+				parameters.getOrDefault("duration", "30"));
+		final double window = Double.parseDouble(
+				parameters.getOrDefault("window", "10"));
+		final boolean scaleChanges = Boolean.parseBoolean(
+				parameters.getOrDefault("scale-changes", "false"));
+		final boolean headless = Boolean.parseBoolean(
+				parameters.getOrDefault("headless", "false"));
+		final String shared = parameters.get("shared");
+
+		final RenderCoordinator coordinator = new RenderCoordinator(
+				RenderCoordinator.DEFAULT_FRAME_BUDGET);
+		coordinator.setRenderListener((graph, staleness, time) ->
+				this.recordLatency(staleness));
+		final Pane layout = new Pane();
+		final int columns = (int)Math.ceil(Math.sqrt(chartAmount));
+		for (int i = 0; i < chartAmount; i++) {
+			final LineGraph chart = new LineGraph(
+					60 + (i % columns) * 420, 260 + (i / columns) * 280,
+					340, 220,
+					0, window, -50, 50);
+			chart.setMarking(LineGraph.marking(6, 11, 3, 1, 3, 0, 6,
+					Font.font("verdana", FontWeight.LIGHT,
+						FontPosture.REGULAR, 10)));
+			chart.setGraphPointradius(0);
+			coordinator.register(chart);
+			layout.getChildren().add(chart);
+			this.charts.add(chart);
+		}
+		final int[] indices = new int[graphs];
+		for (int i = 0; i < graphs; i++) {
+			indices[i] = this.charts.get(i % chartAmount).addGraph(
+					Color.hsb(360.0 * i / graphs, 0.8, 0.8));
+		}
+		if (shared != null) {
+			this.charts.get(0).addGraph(
+					SharedSeriesBuffer.create(Paths.get(shared), 1 << 16),
+					Color.BLACK);
+		}
+
+		new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				Tester.this.recordFrame(now);
 			}
-			launch(args);
+		}.start();
+
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		final long heapBefore = memory.getHeapMemoryUsage().getUsed();
+		final long[] gcBefore = Tester.getGarbageCollection();
+		final Thread producer = new Thread(() -> this.produce(
+				graphs, indices, rate, duration, window, scaleChanges),
+				"Producer");
+		producer.setDaemon(true);
+		producer.start();
+		final Thread reporter = new Thread(() -> {
 			try {
-				t.join();
+				producer.join();
+				// Gives the coordinator time to render the last points
+				Thread.sleep(1000);
 			} catch (InterruptedException e) {
-				e.printStackTrace();
+				// Reports what was measured so far
+				Thread.currentThread().interrupt();
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+			// Both heap sizes are measured after a collection
+			System.gc();
+			final long heapAfter = memory.getHeapMemoryUsage().getUsed();
+			final long[] gcAfter = Tester.getGarbageCollection();
+			Platform.runLater(() -> {
+				this.report(heapBefore, heapAfter, gcBefore, gcAfter);
+				coordinator.stop();
+				Platform.exit();
+			});
+		}, "Reporter");
+		reporter.setDaemon(true);
+		reporter.start();
+
+		primaryStage.setTitle("LineGraph load test");
+		primaryStage.setScene(new Scene(layout,
+				columns * 420, Math.ceil((double)chartAmount / columns) * 280));
+		if (!headless) {
+			primaryStage.show();
 		}
 	}
 
-	@Override
-	public void start(Stage primaryStage) throws Exception {
-		layout.getChildren().add(graph.getCompleteGroup());
-		primaryStage.setScene(new Scene(layout));
-		primaryStage.show();
+	/**
+	 * Extends every graph at the given rate, following
+	 * the data with the X-axis.
+	 */
+	private void produce(
+			int graphs, int[] indices,
+			double rate, double duration,
+			double window, boolean scaleChanges) {
+		final Random random = new Random(0);
+		final double[] values = new double[graphs];
+		final long start = System.nanoTime();
+		final long end = start + (long)(duration * 1e9);
+		long produced = 0;
+		long lastScale = start;
+		for (long now = start; now < end; now = System.nanoTime()) {
+			final double seconds = (now - start) / 1e9;
+			final long due = (long)(seconds * rate);
+			for (; produced < due; produced++) {
+				final double x = produced / rate;
+				for (int i = 0; i < graphs; i++) {
+					values[i] = Math.max(-50, Math.min(50,
+							values[i] + random.nextGaussian()));
+					this.charts.get(i % this.charts.size())
+							.extendGraph(indices[i], x, values[i]);
+				}
+				this.ingested.addAndGet(graphs);
+			}
+			if (now - lastScale >= 1_000_000_000L) {
+				lastScale = now;
+				final double xStart = Math.max(0, seconds - window);
+				final double yRange = scaleChanges && (int)seconds % 2 == 1
+						? 25 : 50;
+				for (LineGraph chart : this.charts) {
+					chart.setXScale(xStart, xStart + window);
+					if (scaleChanges) {
+						chart.setYScale(-yRange, yRange);
+					}
+				}
+			}
+			LockSupport.parkNanos(1_000_000);
+		}
+	}
+
+	private void recordLatency(long latency) {
+		if (this.latencyCount == this.latencies.length) {
+			this.latencies = Arrays.copyOf(
+					this.latencies, this.latencies.length << 1);
+		}
+		this.latencies[this.latencyCount++] = latency;
+	}
+
+	private void recordFrame(long now) {
+		if (this.lastFrame != 0) {
+			// A late frame stands in for every frame it replaced
+			this.droppedFrames += Math.max(0,
+					Math.round((double)(now - this.lastFrame) / FRAME) - 1);
+		}
+		this.lastFrame = now;
+		this.frames++;
+	}
+
+	/**
+	 * Returns the total count and time of garbage collections.
+	 */
+	private static long[] getGarbageCollection() {
+		long count = 0;
+		long time = 0;
+		for (GarbageCollectorMXBean bean
+				: ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, bean.getCollectionCount());
+			time += Math.max(0, bean.getCollectionTime());
+		}
+		return new long[] {count, time};
+	}
+
+	private void report(
+			long heapBefore, long heapAfter,
+			long[] gcBefore, long[] gcAfter) {
+		final long[] sorted = Arrays.copyOf(
+				this.latencies, this.latencyCount);
+		Arrays.sort(sorted);
+		long deferrals = 0;
+		long renderTime = 0;
+		for (LineGraph chart : this.charts) {
+			final RenderStatistics statistics =
+					chart.getRenderCoordinator().getStatistics(chart);
+			deferrals += statistics.getDeferrals();
+			renderTime += statistics.getRenderTime();
+		}
+		final long gcCount = gcAfter[0] - gcBefore[0];
+		System.out.println("points.ingested=" + this.ingested.get());
+		System.out.println("renders=" + sorted.length);
+		System.out.println("render.deferrals=" + deferrals);
+		System.out.println("render.time.ms=" + renderTime / 1_000_000);
+		System.out.println("latency.p50.ms=" + Tester.percentile(sorted, 50));
+		System.out.println("latency.p95.ms=" + Tester.percentile(sorted, 95));
+		System.out.println("latency.p99.ms=" + Tester.percentile(sorted, 99));
+		System.out.println("latency.max.ms=" + Tester.percentile(sorted, 100));
+		System.out.println("frames=" + this.frames);
+		System.out.println("frames.dropped=" + this.droppedFrames);
+		System.out.println("heap.growth.kb=" + (heapAfter - heapBefore) / 1024);
+		System.out.println("gc.count=" + gcCount);
+		System.out.println("gc.time.ms=" + (gcAfter[1] - gcBefore[1]));
+		System.out.println("gc.mean.pause.ms=" + (gcCount == 0
+				? 0 : (double)(gcAfter[1] - gcBefore[1]) / gcCount));
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return Double.NaN;
+		}
+		final int index = (int)Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
 	}
 }
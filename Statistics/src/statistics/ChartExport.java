@@ -0,0 +1,403 @@
+package statistics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+/**
+ * Exports a {@link LineGraph LineGraph} as SVG and its graphs as CSV.<br/>
+ * Graphs are written as paths, except bar graphs, which are written as
+ * one rectangle per bar.
+ * Points are streamed from the graphs into a buffered channel writer,
+ * so that the memory needed does not depend on the amount of points.
+ * Optionally the points are decimated to a resolution: of all points
+ * within the same bucket of X-values only the first, the last and the
+ * ones with the smallest and largest Y-value are written.
+ * @author Mario Schaeper
+ */
+final class ChartExport {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Receives the points of a graph in order.
+	 */
+	private interface PointWriter {
+		void write(double x, double y) throws IOException;
+	}
+
+	private ChartExport() {}
+
+	/**
+	 * Writes a line graph as SVG to a channel, without closing it.
+	 * @param graph the line graph to write
+	 * @param channel the channel to write to
+	 * @param resolution the amount of buckets along the X-axis
+	 * 	or <b>0</b> to write every point
+	 * @throws IOException if the channel can not be written to
+	 */
+	static void writeSvg(
+			LineGraph graph,
+			WritableByteChannel channel,
+			int resolution) throws IOException {
+		final Writer writer = ChartExport.writer(channel);
+		final double x = graph.getX();
+		final double y = graph.getY();
+		final double width = graph.getScaleWidth();
+		final double height = graph.getScaleHeight();
+		final double margin = Math.max(x, y - height);
+		final double stroke = graph.getScaleStrokeWidth();
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\""
+				+ ChartExport.format(x + width + margin) + "\" height=\""
+				+ ChartExport.format(y + margin) + "\">\n");
+		writer.write("<defs><clipPath id=\"scale\"><rect x=\""
+				+ ChartExport.format(x) + "\" y=\""
+				+ ChartExport.format(y - height) + "\" width=\""
+				+ ChartExport.format(width) + "\" height=\""
+				+ ChartExport.format(height) + "\"/></clipPath></defs>\n");
+		writer.write("<g stroke=\"black\" stroke-width=\""
+				+ ChartExport.format(stroke) + "\">\n");
+		ChartExport.writeLine(writer, x, y, x, y - height);
+		ChartExport.writeLine(writer, x, y, x + width, y);
+		final LineGraph.Marking marking = graph.getMarking();
+		if (marking != null) {
+			ChartExport.writeMarking(writer, graph, marking);
+		}
+		writer.write("</g>\n");
+		for (int i = 0; i < graph.getGraphAmount(); i++) {
+			if (graph.isBarGraph(i)) {
+				ChartExport.writeBars(writer, graph, i);
+			} else {
+				ChartExport.writePath(writer, graph, i, resolution);
+			}
+		}
+		writer.write("</svg>\n");
+		writer.flush();
+	}
+
+	/**
+	 * Writes a line graph as SVG to a file.
+	 * @see #writeSvg(LineGraph, WritableByteChannel, int)
+	 */
+	static void writeSvg(LineGraph graph, Path path, int resolution)
+			throws IOException {
+		try (FileChannel channel = ChartExport.open(path)) {
+			ChartExport.writeSvg(graph, channel, resolution);
+		}
+	}
+
+	/**
+	 * Writes the points of a graph as CSV with the columns
+	 * <code>x</code> and <code>y</code> to a channel, without closing it.
+	 * With a {@link TimeAxis TimeAxis} the X-values are written as
+	 * timestamps.
+	 * @param graph the line graph to write
+	 * @param index the index of the graph to write
+	 * @param channel the channel to write to
+	 * @param resolution the amount of buckets between the smallest and
+	 * 	the largest X-value or <b>0</b> to write every point
+	 * @throws IOException if the channel can not be written to
+	 */
+	static void writeCsv(
+			LineGraph graph, int index,
+			WritableByteChannel channel,
+			int resolution) throws IOException {
+		final SeriesIndex series = graph.getSeriesIndex(index);
+		final int count = series.size();
+		double xStart = Double.POSITIVE_INFINITY;
+		double xEnd = Double.NEGATIVE_INFINITY;
+		if (series.isSorted() && count > 0) {
+			xStart = series.getX(0);
+			xEnd = series.getX(count - 1);
+		} else {
+			for (int i = 0; i < count; i++) {
+				xStart = Math.min(xStart, series.getX(i));
+				xEnd = Math.max(xEnd, series.getX(i));
+			}
+		}
+		final TimeAxis axis = graph.getTimeAxis();
+		final Writer writer = ChartExport.writer(channel);
+		writer.write("x,y\n");
+		ChartExport.decimate(series, count, xStart, xEnd, resolution,
+				(x, y) -> {
+					writer.write(axis != null
+							? Long.toString(axis.toTime(x))
+							: Double.toString(x));
+					writer.write(',');
+					writer.write(Double.toString(y));
+					writer.write('\n');
+				});
+		writer.flush();
+	}
+
+	/**
+	 * Writes the points of a graph as CSV to a file.
+	 * @see #writeCsv(LineGraph, int, WritableByteChannel, int)
+	 */
+	static void writeCsv(
+			LineGraph graph, int index,
+			Path path,
+			int resolution) throws IOException {
+		try (FileChannel channel = ChartExport.open(path)) {
+			ChartExport.writeCsv(graph, index, channel, resolution);
+		}
+	}
+
+	private static void writeMarking(
+			Writer writer,
+			LineGraph graph,
+			LineGraph.Marking marking) throws IOException {
+		final double x = graph.getX();
+		final double y = graph.getY();
+		final double length = marking.getLength();
+		final int xMarkings = marking.getAmountX() - 1;
+		final int yMarkings = marking.getAmountY() - 1;
+		final String font = " font-family=\""
+				+ ChartExport.escape(marking.getFont().getFamily())
+				+ "\" font-size=\""
+				+ ChartExport.format(marking.getFont().getSize())
+				+ "\" stroke=\"none\"";
+		final TimeAxis.Ticks ticks = graph.getTimeTicks();
+		if (ticks != null) {
+			for (int i = 0; i < ticks.size(); i++) {
+				ChartExport.writeMarkingX(writer,
+						x + (ticks.getX(i) - graph.getXStart())
+							* graph.getXScaleFactor(),
+						y, length, font, ticks.getLabel(i));
+			}
+		} else {
+			for (int i = 0; i <= xMarkings; i++) {
+				ChartExport.writeMarkingX(writer,
+						x + graph.getScaleWidth() / xMarkings * i,
+						y, length, font,
+						marking.formatX(graph.getXStart()
+							+ (double)i / (double)xMarkings
+							* (graph.getXEnd() - graph.getXStart())));
+			}
+		}
+		for (int j = 0; j <= yMarkings; j++) {
+			final double markingY = y - graph.getScaleHeight() / yMarkings * j;
+			ChartExport.writeLine(writer, x, markingY, x - length, markingY);
+			writer.write("<text x=\"" + ChartExport.format(x - 1.5 * length)
+					+ "\" y=\"" + ChartExport.format(markingY)
+					+ "\" text-anchor=\"end\" dominant-baseline=\"middle\""
+					+ font + ">"
+					+ ChartExport.escape(marking.formatY(graph.getYStart()
+						+ (double)j / (double)yMarkings
+						* (graph.getYEnd() - graph.getYStart())))
+					+ "</text>\n");
+		}
+	}
+
+	private static void writeMarkingX(
+			Writer writer,
+			double markingX, double y,
+			double length, String font,
+			String label) throws IOException {
+		ChartExport.writeLine(writer, markingX, y, markingX, y + length);
+		writer.write("<text x=\"" + ChartExport.format(markingX)
+				+ "\" y=\"" + ChartExport.format(y + 1.5 * length)
+				+ "\" text-anchor=\"middle\" dominant-baseline=\"hanging\""
+				+ font + ">"
+				+ ChartExport.escape(label)
+				+ "</text>\n");
+	}
+
+	private static void writePath(
+			Writer writer,
+			LineGraph graph,
+			int index,
+			int resolution) throws IOException {
+		final SeriesIndex series = graph.getSeriesIndex(index);
+		final int count = series.size();
+		if (count == 0) {
+			return;
+		}
+		final double xOffset = graph.getX()
+				- graph.getXStart() * graph.getXScaleFactor();
+		final double xFactor = graph.getXScaleFactor();
+		final double yOffset = graph.getY()
+				+ graph.getYStart() * graph.getYScaleFactor();
+		final double yFactor = graph.getYScaleFactor();
+		writer.write("<path clip-path=\"url(#scale)\" fill=\"none\""
+				+ ChartExport.paint("stroke", graph.getGraphColor(index))
+				+ " stroke-width=\""
+				+ ChartExport.format(graph.getGraphStrokeWidth())
+				+ "\" d=\"");
+		final boolean[] first = {true};
+		ChartExport.decimate(
+				series, count,
+				graph.getXStart(), graph.getXEnd(),
+				resolution,
+				(x, y) -> {
+					writer.write(first[0] ? "M" : " L");
+					first[0] = false;
+					writer.write(ChartExport.format(xOffset + x * xFactor));
+					writer.write(' ');
+					writer.write(ChartExport.format(yOffset - y * yFactor));
+				});
+		writer.write("\"/>\n");
+	}
+
+	/**
+	 * Writes every two consecutive points as a bar from the X-value of
+	 * the first to the X-value of the second, rising from zero to the
+	 * Y-value of the first. Bars are cut off at the scale.
+	 */
+	private static void writeBars(
+			Writer writer,
+			LineGraph graph,
+			int index) throws IOException {
+		final SeriesIndex series = graph.getSeriesIndex(index);
+		final double xMin = Math.min(graph.getXStart(), graph.getXEnd());
+		final double xMax = Math.max(graph.getXStart(), graph.getXEnd());
+		final double yMin = Math.min(graph.getYStart(), graph.getYEnd());
+		final double yMax = Math.max(graph.getYStart(), graph.getYEnd());
+		final String fill = ChartExport.paint(
+				"fill", graph.getGraphColor(index));
+		for (int i = 0; i + 1 < series.size(); i += 2) {
+			final double left = Math.max(xMin, series.getX(i));
+			final double right = Math.min(xMax, series.getX(i + 1));
+			final double top = Math.min(yMax, series.getY(i));
+			final double bottom = Math.max(yMin, Math.min(yMax, 0));
+			if (left >= right || top <= bottom) {
+				continue;
+			}
+			writer.write("<rect x=\""
+					+ ChartExport.format(graph.getX()
+						+ (left - graph.getXStart()) * graph.getXScaleFactor())
+					+ "\" y=\""
+					+ ChartExport.format(graph.getY()
+						- (top - graph.getYStart()) * graph.getYScaleFactor())
+					+ "\" width=\""
+					+ ChartExport.format((right - left) * graph.getXScaleFactor())
+					+ "\" height=\""
+					+ ChartExport.format((top - bottom) * graph.getYScaleFactor())
+					+ "\"" + fill + "/>\n");
+		}
+	}
+
+	/**
+	 * Passes the points to <code>writer</code>, keeping only the first,
+	 * last, smallest and largest point of each bucket. Points before
+	 * <code>xStart</code> or after <code>xEnd</code> share a bucket.
+	 */
+	private static void decimate(
+			SeriesIndex series, int count,
+			double xStart, double xEnd,
+			int resolution,
+			PointWriter writer) throws IOException {
+		if (resolution <= 0 || !(xEnd > xStart)) {
+			for (int i = 0; i < count; i++) {
+				writer.write(series.getX(i), series.getY(i));
+			}
+			return;
+		}
+		final double width = (xEnd - xStart) / resolution;
+		final int[] kept = new int[4];
+		long bucket = Long.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			final long current = Math.max(-1, Math.min(resolution,
+					(long)Math.floor((series.getX(i) - xStart) / width)));
+			if (current != bucket) {
+				ChartExport.writeBucket(series, kept, bucket, writer);
+				bucket = current;
+				Arrays.fill(kept, i);
+			} else {
+				final double y = series.getY(i);
+				if (y < series.getY(kept[1])) {
+					kept[1] = i;
+				}
+				if (y > series.getY(kept[2])) {
+					kept[2] = i;
+				}
+				kept[3] = i;
+			}
+		}
+		ChartExport.writeBucket(series, kept, bucket, writer);
+	}
+
+	private static void writeBucket(
+			SeriesIndex series,
+			int[] kept,
+			long bucket,
+			PointWriter writer) throws IOException {
+		if (bucket == Long.MIN_VALUE) {
+			return;
+		}
+		Arrays.sort(kept);
+		for (int i = 0; i < kept.length; i++) {
+			if (i == 0 || kept[i] != kept[i - 1]) {
+				writer.write(series.getX(kept[i]), series.getY(kept[i]));
+			}
+		}
+	}
+
+	private static void writeLine(
+			Writer writer,
+			double startX, double startY,
+			double endX, double endY) throws IOException {
+		writer.write("<line x1=\"" + ChartExport.format(startX)
+				+ "\" y1=\"" + ChartExport.format(startY)
+				+ "\" x2=\"" + ChartExport.format(endX)
+				+ "\" y2=\"" + ChartExport.format(endY) + "\"/>\n");
+	}
+
+	/**
+	 * Formats a paint as the value of a <code>stroke</code> or
+	 * <code>fill</code> attribute and its opacity.
+	 */
+	private static String paint(String attribute, Paint paint) {
+		if (!(paint instanceof Color)) {
+			return " " + attribute + "=\"black\"";
+		}
+		final Color color = (Color)paint;
+		return " " + attribute + "=\"rgb("
+				+ Math.round(color.getRed() * 255) + ","
+				+ Math.round(color.getGreen() * 255) + ","
+				+ Math.round(color.getBlue() * 255) + ")\" "
+				+ attribute + "-opacity=\""
+				+ ChartExport.format(color.getOpacity()) + "\"";
+	}
+
+	/**
+	 * Formats a coordinate with at most two digits behind the comma.
+	 */
+	private static String format(double value) {
+		final double rounded = Math.round(value * 100) / 100.0;
+		return rounded == Math.rint(rounded)
+				? Long.toString((long)rounded)
+				: Double.toString(rounded);
+	}
+
+	private static String escape(String text) {
+		return text
+				.replace("&", "&amp;")
+				.replace("<", "&lt;")
+				.replace(">", "&gt;")
+				.replace("\"", "&quot;");
+	}
+
+	private static Writer writer(WritableByteChannel channel) {
+		return Channels.newWriter(
+				channel,
+				StandardCharsets.UTF_8.newEncoder(),
+				BUFFER_SIZE);
+	}
+
+	private static FileChannel open(Path path) throws IOException {
+		return FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+	}
+}
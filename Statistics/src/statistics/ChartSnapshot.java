@@ -0,0 +1,306 @@
+package statistics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+/**
+ * Reads and writes the binary snapshot format of a
+ * {@link LineGraph LineGraph}.<br/>
+ * A snapshot consists of a header with the scale, the
+ * {@link LineGraph.Marking Marking}, the {@link TimeAxis TimeAxis} and
+ * the stroke settings, followed by every graph with its color, its style
+ * and its coordinates. The coordinates of a graph are stored as one block of
+ * X-values and one block of Y-values, so that they can be copied in
+ * bulk or read from a mapped file.
+ * All values are little endian.
+ * @author Mario Schaeper
+ */
+final class ChartSnapshot {
+	private static final int MAGIC = 0x4C475346;
+	private static final short VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ByteBuffer buffer;
+	private final ReadableByteChannel in;
+	private final WritableByteChannel out;
+
+	private ChartSnapshot(
+			ByteBuffer buffer,
+			ReadableByteChannel in,
+			WritableByteChannel out) {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.in = in;
+		this.out = out;
+	}
+
+	/**
+	 * Writes a snapshot of a line graph to a channel.
+	 * @param graph the line graph to write
+	 * @param channel the channel to write to
+	 * @throws IOException if the channel can not be written to
+	 */
+	static void write(LineGraph graph, WritableByteChannel channel)
+			throws IOException {
+		final ChartSnapshot snapshot = new ChartSnapshot(
+				ByteBuffer.allocateDirect(BUFFER_SIZE), null, channel);
+		snapshot.require(6);
+		snapshot.buffer.putInt(MAGIC);
+		snapshot.buffer.putShort(VERSION);
+		snapshot.putDoubles(new double[] {
+				graph.getX(), graph.getY(),
+				graph.getScaleWidth(), graph.getScaleHeight(),
+				graph.getXStart(), graph.getXEnd(),
+				graph.getYStart(), graph.getYEnd(),
+				graph.getScaleStrokeWidth(),
+				graph.getGraphStrokeWidth(),
+				graph.getGraphPointRadius()}, 11);
+		final LineGraph.Marking marking = graph.getMarking();
+		snapshot.require(1);
+		snapshot.buffer.put((byte)(marking != null ? 1 : 0));
+		if (marking != null) {
+			snapshot.require(32);
+			snapshot.buffer.putInt(marking.getAmountX());
+			snapshot.buffer.putInt(marking.getAmountY());
+			snapshot.buffer.putInt(marking.getDigitsX());
+			snapshot.buffer.putInt(marking.getCommaDigitsX());
+			snapshot.buffer.putInt(marking.getDigitsY());
+			snapshot.buffer.putInt(marking.getCommaDigitsY());
+			snapshot.buffer.putDouble(marking.getLength());
+			snapshot.putString(marking.getFont().getName());
+			snapshot.require(8);
+			snapshot.buffer.putDouble(marking.getFont().getSize());
+		}
+		final TimeAxis axis = graph.getTimeAxis();
+		snapshot.require(1);
+		snapshot.buffer.put((byte)(axis != null ? 1 : 0));
+		if (axis != null) {
+			snapshot.putString(axis.getUnit().name());
+			snapshot.putString(axis.getZone().getId());
+			snapshot.require(8);
+			snapshot.buffer.putLong(axis.getOrigin());
+		}
+		final int graphs = graph.getGraphAmount();
+		snapshot.require(4);
+		snapshot.buffer.putInt(graphs);
+		for (int i = 0; i < graphs; i++) {
+			final SeriesIndex index = graph.getSeriesIndex(i);
+			snapshot.putString(graph.getGraphColor(i).toString());
+			snapshot.require(5);
+			snapshot.buffer.put((byte)(graph.isBarGraph(i) ? 1 : 0));
+			snapshot.buffer.putInt(index.size());
+			snapshot.putDoubles(index.getXs(), index.size());
+			snapshot.putDoubles(index.getYs(), index.size());
+		}
+		snapshot.flush();
+	}
+
+	/**
+	 * Writes a snapshot of a line graph to a file.
+	 * @param graph the line graph to write
+	 * @param path the file to write to
+	 * @throws IOException if the file can not be written
+	 */
+	static void write(LineGraph graph, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			ChartSnapshot.write(graph, channel);
+		}
+	}
+
+	/**
+	 * Reads a line graph from a channel.
+	 * @param channel the channel to read from
+	 * @return the restored line graph
+	 * @throws IOException if the channel can not be read
+	 * 	or does not contain a valid snapshot
+	 */
+	static LineGraph read(ReadableByteChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.flip();
+		return new ChartSnapshot(buffer, channel, null).read();
+	}
+
+	/**
+	 * Reads a line graph from a file, which is mapped into memory.
+	 * @param path the file to read from
+	 * @return the restored line graph
+	 * @throws IOException if the file can not be read
+	 * 	or does not contain a valid snapshot
+	 */
+	static LineGraph read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(
+				path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				return ChartSnapshot.read(channel);
+			}
+			return new ChartSnapshot(
+					channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+					null, null).read();
+		}
+	}
+
+	private LineGraph read() throws IOException {
+		this.require(6);
+		if (this.buffer.getInt() != MAGIC) {
+			throw new IOException("Not a line graph snapshot");
+		}
+		final short version = this.buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version: " + version);
+		}
+		final double[] scale = new double[11];
+		this.getDoubles(scale, scale.length);
+		final LineGraph graph = new LineGraph(
+				scale[0], scale[1],
+				scale[2], scale[3],
+				scale[4], scale[5],
+				scale[6], scale[7]);
+		graph.setScaleStrokeWidth(scale[8]);
+		graph.setGraphStrokeWidth(scale[9]);
+		graph.setGraphPointradius(scale[10]);
+		this.require(1);
+		if (this.buffer.get() != 0) {
+			this.require(32);
+			final int amountX = this.buffer.getInt();
+			final int amountY = this.buffer.getInt();
+			final int digitsX = this.buffer.getInt();
+			final int commaDigitsX = this.buffer.getInt();
+			final int digitsY = this.buffer.getInt();
+			final int commaDigitsY = this.buffer.getInt();
+			final double length = this.buffer.getDouble();
+			final String font = this.getString();
+			this.require(8);
+			graph.setMarking(LineGraph.marking(
+					amountX, amountY,
+					digitsX, commaDigitsX,
+					digitsY, commaDigitsY,
+					length, new Font(font, this.buffer.getDouble())));
+		}
+		this.require(1);
+		if (this.buffer.get() != 0) {
+			graph.setTimeAxis(this.getTimeAxis());
+		}
+		this.require(4);
+		final int graphs = this.buffer.getInt();
+		for (int i = 0; i < graphs; i++) {
+			final Paint color = Paint.valueOf(this.getString());
+			this.require(5);
+			final boolean bars = this.buffer.get() != 0;
+			final int size = this.buffer.getInt();
+			if (size < 0) {
+				throw new IOException("Corrupt snapshot");
+			}
+			final double[] xs = new double[size];
+			final double[] ys = new double[size];
+			this.getDoubles(xs, size);
+			this.getDoubles(ys, size);
+			graph.addGraph(xs, ys, size, color, bars);
+		}
+		return graph;
+	}
+
+	private TimeAxis getTimeAxis() throws IOException {
+		final String unit = this.getString();
+		final String zone = this.getString();
+		this.require(8);
+		final long origin = this.buffer.getLong();
+		try {
+			return new TimeAxis(
+					TimeUnit.valueOf(unit), ZoneId.of(zone), origin);
+		} catch (IllegalArgumentException | DateTimeException e) {
+			throw new IOException("Corrupt time axis", e);
+		}
+	}
+
+	/**
+	 * Makes sure that at least <code>bytes</code> can be put into or
+	 * taken from the buffer.
+	 */
+	private void require(int bytes) throws IOException {
+		if (this.buffer.remaining() >= bytes) {
+			return;
+		}
+		if (this.out != null) {
+			this.flush();
+			return;
+		}
+		if (this.in == null) {
+			throw new EOFException("Unexpected end of snapshot");
+		}
+		this.buffer.compact();
+		while (this.buffer.position() < bytes) {
+			if (this.in.read(this.buffer) < 0) {
+				throw new EOFException("Unexpected end of snapshot");
+			}
+		}
+		this.buffer.flip();
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.out.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void putDoubles(double[] values, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			this.require(8);
+			final int amount = Math.min(
+					length - offset, this.buffer.remaining() >> 3);
+			this.buffer.asDoubleBuffer().put(values, offset, amount);
+			this.buffer.position(this.buffer.position() + (amount << 3));
+			offset += amount;
+		}
+	}
+
+	private void getDoubles(double[] values, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			this.require(8);
+			final int amount = Math.min(
+					length - offset, this.buffer.remaining() >> 3);
+			this.buffer.asDoubleBuffer().get(values, offset, amount);
+			this.buffer.position(this.buffer.position() + (amount << 3));
+			offset += amount;
+		}
+	}
+
+	private void putString(String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > BUFFER_SIZE - 4) {
+			throw new IllegalArgumentException("String too long: " + value);
+		}
+		this.require(4 + bytes.length);
+		this.buffer.putInt(bytes.length);
+		this.buffer.put(bytes);
+	}
+
+	private String getString() throws IOException {
+		this.require(4);
+		final int length = this.buffer.getInt();
+		if (length < 0 || length > BUFFER_SIZE - 4) {
+			throw new IOException("Corrupt snapshot");
+		}
+		this.require(length);
+		final byte[] bytes = new byte[length];
+		this.buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,98 @@
+package statistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A {@link SeriesSource SeriesSource} reading its points
+ * from a memory mapped file.<br/>
+ * The file consists of little endian pairs of X- and Y-values,
+ * sorted by their X-values, as written by
+ * {@link #write(Path, double[][]) write}.
+ * @author Mario Schaeper
+ */
+public class FileSeriesSource implements SeriesSource, Closeable {
+	private final FileChannel channel;
+	private final DoubleBuffer coordinates;
+
+	/**
+	 * Opens a file of points.
+	 * @param path the file to read from
+	 * @throws IOException if the file can not be read
+	 */
+	public FileSeriesSource(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		final long size = this.channel.size();
+		if (size % 16 != 0 || size > Integer.MAX_VALUE) {
+			this.channel.close();
+			throw new IOException("Not a file of points: " + path);
+		}
+		this.coordinates = this.channel
+				.map(FileChannel.MapMode.READ_ONLY, 0, size)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.asDoubleBuffer();
+	}
+
+	@Override
+	public double[][] getPoints(
+			double xStart, double xEnd, double resolution) {
+		return MemorySeriesSource.decimate(
+				this.coordinates.duplicate(), xStart, xEnd, resolution);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Writes points to a file, which can be read by a
+	 * {@link FileSeriesSource FileSeriesSource}.<br/>
+	 * Coordinates are arrays with x and y values.
+	 * @param path the file to write to
+	 * @param coordinates array of coordinates
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(Path path, double[][] coordinates)
+			throws IOException {
+		final double[][] sorted = coordinates.clone();
+		Arrays.sort(sorted, Comparator.comparingDouble(point -> point[0]));
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		try (FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			for (double[] point : sorted) {
+				if (point.length != 2) {
+					throw new IllegalArgumentException(
+							"Coordinates have to consist of two values");
+				}
+				if (buffer.remaining() < 16) {
+					FileSeriesSource.flush(buffer, channel);
+				}
+				buffer.putDouble(point[0]);
+				buffer.putDouble(point[1]);
+			}
+			FileSeriesSource.flush(buffer, channel);
+		}
+	}
+
+	private static void flush(ByteBuffer buffer, FileChannel channel)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
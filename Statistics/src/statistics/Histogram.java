@@ -0,0 +1,264 @@
+package statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of non-negative values, e.g. latencies,
+ * in log-linear buckets.<br/>
+ * Values below <code>2^precision</code> are counted exactly. Above,
+ * every power of two is split into <code>2^(precision - 1)</code>
+ * buckets, so that the relative error stays below
+ * <code>2^(1 - precision)</code> over the whole range of
+ * <code>long</code>.<br/>
+ * Recording does not allocate and never blocks: the counts are striped
+ * over several atomic arrays, which are chosen by the recording thread.
+ * {@link #getSnapshot() Snapshots} sum the stripes without stopping
+ * recorders, and histograms as well as snapshots can be merged.
+ * @author Mario Schaeper
+ */
+public class Histogram {
+	private final int precision;
+	private final int subBuckets;
+	private final int halfSubBuckets;
+	private final int bucketCount;
+	private final AtomicLongArray[] stripes;
+	private final int stripeMask;
+
+	/**
+	 * An immutable copy of the counts of a {@link Histogram Histogram}.
+	 */
+	public static final class Snapshot {
+		private final Histogram histogram;
+		private final long[] counts;
+		private final long total;
+
+		private Snapshot(Histogram histogram, long[] counts) {
+			this.histogram = histogram;
+			this.counts = counts;
+			long total = 0;
+			for (long count : counts) {
+				total += count;
+			}
+			this.total = total;
+		}
+
+		/**
+		 * Returns the amount of recorded values.
+		 * @return the amount of recorded values
+		 */
+		public long getTotalCount() {
+			return this.total;
+		}
+
+		/**
+		 * Returns the amount of buckets.
+		 * @return the amount of buckets
+		 */
+		public int getBucketCount() {
+			return this.counts.length;
+		}
+
+		/**
+		 * Returns the amount of values recorded in a bucket.
+		 * @param bucket the index of the bucket
+		 * @return the amount of values in the bucket
+		 */
+		public long getCount(int bucket) {
+			return this.counts[bucket];
+		}
+
+		/**
+		 * Returns the smallest value counted in a bucket.
+		 * @param bucket the index of the bucket
+		 * @return the lower bound of the bucket
+		 */
+		public long getLowerBound(int bucket) {
+			return this.histogram.getLowerBound(bucket);
+		}
+
+		/**
+		 * Returns the largest value counted in a bucket.
+		 * @param bucket the index of the bucket
+		 * @return the upper bound of the bucket
+		 */
+		public long getUpperBound(int bucket) {
+			return this.histogram.getLowerBound(bucket)
+					+ this.histogram.getBucketWidth(bucket) - 1;
+		}
+
+		/**
+		 * Returns the value below or at which the given percentage
+		 * of all recorded values lies.<br/>
+		 * The result is the upper bound of the bucket containing it.
+		 * @param percentile the percentile between <b>0</b> and <b>100</b>
+		 * @return the value or <b>0</b> if nothing was recorded
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException(
+						"The percentile has to be between 0 and 100");
+			}
+			final long rank = Math.max(1,
+					(long)Math.ceil(percentile / 100 * this.total));
+			long seen = 0;
+			for (int i = 0; i < this.counts.length; i++) {
+				seen += this.counts[i];
+				if (seen >= rank) {
+					return this.getUpperBound(i);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Returns a snapshot containing the values of both snapshots.
+		 * @param other a snapshot of a histogram of the same precision
+		 * @return the merged snapshot
+		 */
+		public Snapshot merge(Snapshot other) {
+			this.histogram.checkCompatible(other.histogram);
+			final long[] counts = this.counts.clone();
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += other.counts[i];
+			}
+			return new Snapshot(this.histogram, counts);
+		}
+	}
+
+	/**
+	 * Creates a histogram with a relative error below 1%.
+	 */
+	public Histogram() {
+		this(8);
+	}
+
+	/**
+	 * Creates a histogram.
+	 * @param precision the amount of significant bits of a bucket,
+	 * 	between <b>2</b> and <b>16</b>
+	 */
+	public Histogram(int precision) {
+		if (precision < 2 || precision > 16) {
+			throw new IllegalArgumentException(
+					"The precision has to be between 2 and 16");
+		}
+		this.precision = precision;
+		this.subBuckets = 1 << precision;
+		this.halfSubBuckets = this.subBuckets >> 1;
+		this.bucketCount = this.subBuckets
+				+ (Long.SIZE - 1 - precision) * this.halfSubBuckets;
+		final int stripes = Integer.highestOneBit(
+				Math.max(1, Runtime.getRuntime().availableProcessors() - 1))
+				<< 1;
+		this.stripes = new AtomicLongArray[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new AtomicLongArray(this.bucketCount);
+		}
+		this.stripeMask = stripes - 1;
+	}
+
+	/**
+	 * Records a value.
+	 * @param value the value, which has to be non-negative
+	 */
+	public void record(long value) {
+		this.record(value, 1);
+	}
+
+	/**
+	 * Records a value several times.
+	 * @param value the value, which has to be non-negative
+	 * @param count how often to record the value
+	 */
+	public void record(long value, long count) {
+		if (value < 0) {
+			throw new IllegalArgumentException(
+					"The value can not be negative");
+		}
+		this.stripes[(int)Thread.currentThread().getId() & this.stripeMask]
+				.addAndGet(this.getBucket(value), count);
+	}
+
+	/**
+	 * Adds all values recorded by another histogram.
+	 * @param other a histogram of the same precision
+	 */
+	public void add(Histogram other) {
+		this.add(other.getSnapshot());
+	}
+
+	/**
+	 * Adds all values of a snapshot.
+	 * @param snapshot a snapshot of a histogram of the same precision
+	 */
+	public void add(Snapshot snapshot) {
+		this.checkCompatible(snapshot.histogram);
+		final AtomicLongArray stripe = this.stripes[
+				(int)Thread.currentThread().getId() & this.stripeMask];
+		for (int i = 0; i < this.bucketCount; i++) {
+			if (snapshot.counts[i] != 0) {
+				stripe.addAndGet(i, snapshot.counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the current counts.<br/>
+	 * Values recorded concurrently may or may not be included.
+	 * @return the snapshot
+	 */
+	public Snapshot getSnapshot() {
+		final long[] counts = new long[this.bucketCount];
+		for (AtomicLongArray stripe : this.stripes) {
+			for (int i = 0; i < this.bucketCount; i++) {
+				counts[i] += stripe.get(i);
+			}
+		}
+		return new Snapshot(this, counts);
+	}
+
+	/**
+	 * Returns the amount of significant bits of a bucket.
+	 * @return the precision
+	 */
+	public int getPrecision() {
+		return this.precision;
+	}
+
+	private int getBucket(long value) {
+		if (value < this.subBuckets) {
+			return (int)value;
+		}
+		final int shift = Long.SIZE - Long.numberOfLeadingZeros(value)
+				- this.precision;
+		final int mantissa = (int)(value >>> shift);
+		return this.subBuckets
+				+ (shift - 1) * this.halfSubBuckets
+				+ mantissa - this.halfSubBuckets;
+	}
+
+	private long getLowerBound(int bucket) {
+		if (bucket < this.subBuckets) {
+			return bucket;
+		}
+		final int offset = bucket - this.subBuckets;
+		final int shift = offset / this.halfSubBuckets + 1;
+		final long mantissa = offset % this.halfSubBuckets
+				+ this.halfSubBuckets;
+		return mantissa << shift;
+	}
+
+	private long getBucketWidth(int bucket) {
+		if (bucket < this.subBuckets) {
+			return 1;
+		}
+		return 1L << ((bucket - this.subBuckets) / this.halfSubBuckets + 1);
+	}
+
+	private void checkCompatible(Histogram other) {
+		if (other.precision != this.precision) {
+			throw new IllegalArgumentException(
+					"Histograms of different precisions can not be merged");
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package statistics;
+
+/**
+ * The ways a {@link Histogram Histogram} can be displayed
+ * by a {@link LineGraph LineGraph}.
+ * @author Mario Schaeper
+ */
+public enum HistogramStyle {
+	/**
+	 * One bar per non-empty bucket, spanning the values of the bucket
+	 * on the X-axis and showing its count on the Y-axis.
+	 */
+	BARS,
+	/**
+	 * A curve of the percentiles on the X-axis, from <b>0</b> to
+	 * <b>100</b>, against their values on the Y-axis.
+	 */
+	PERCENTILES
+}
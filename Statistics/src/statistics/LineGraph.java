@@ -1,16 +1,24 @@
 package statistics;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.awt.geom.Line2D;
+import javafx.scene.CacheHint;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 import javafx.scene.text.Font;
 import javafx.scene.control.Tooltip;
-import javafx.concurrent.Task;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 
 
@@ -23,9 +31,11 @@ import javafx.application.Platform;
  */
 public class LineGraph extends VBox {
 	private Group scaleGroup = new Group();
+	private Group axisGroup = new Group();
 	private Group markingGroup = new Group();
 	private ArrayList<Graph> graphs = new ArrayList<>();
 	private Marking marking = null;
+	private TimeAxis timeAxis = null;
 	private int graphCount = 0;
 	private double scaleStrokeWidth = 2.5;
 	private double graphStrokeWidth = 1;
@@ -40,6 +50,48 @@ public class LineGraph extends VBox {
 	private double yEnd;
 	private double xScaleFactor;
 	private double yScaleFactor;
+	private RenderCoordinator coordinator = null;
+	private volatile long scaleVersion = 0;
+	private final ArrayList<Runnable> feeds = new ArrayList<>();
+	private AnimationTimer feedTimer = null;
+	private final AtomicBoolean renderScheduled = new AtomicBoolean(false);
+	private volatile boolean axesInvalid = true;
+	private volatile boolean markingInvalid = true;
+	private volatile boolean layersInvalid = true;
+
+	/**
+	 * The amount of tiles cached for each graph bound to a
+	 * {@link SeriesSource SeriesSource}.
+	 */
+	private static final int SOURCE_CACHE_TILES = 64;
+
+	/**
+	 * The maximum amount of points drained from a
+	 * {@link SharedSeriesBuffer SharedSeriesBuffer} per pulse.
+	 */
+	private static final int SHARED_DRAIN_LIMIT = 1 << 16;
+
+	/**
+	 * The time in nanoseconds between two snapshots of a
+	 * {@link Histogram Histogram}.
+	 */
+	private static final long HISTOGRAM_REFRESH_INTERVAL = 250_000_000;
+
+	/**
+	 * The percentiles displayed by a {@link Histogram Histogram}
+	 * with {@link HistogramStyle#PERCENTILES PERCENTILES}.
+	 */
+	private static final double[] PERCENTILES = new double[104];
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			PERCENTILES[i] = i;
+		}
+		PERCENTILES[100] = 99.9;
+		PERCENTILES[101] = 99.99;
+		PERCENTILES[102] = 99.999;
+		PERCENTILES[103] = 100;
+	}
 
 	protected final class Point {
 		private final double x;
@@ -71,10 +123,7 @@ public class LineGraph extends VBox {
 		}
 
 		protected boolean isInGraph() {
-			return this.x >= LineGraph.this.xStart
-					&& this.x <= LineGraph.this.xEnd
-					&& this.y >= LineGraph.this.yStart
-					&& this.y <= LineGraph.this.yEnd;
+			return LineGraph.this.isInGraph(this.x, this.y);
 		}
 
 		private double getDistance(Point other) {
@@ -160,44 +209,173 @@ public class LineGraph extends VBox {
 				return null;
 			}
 
-			Line line = new Line(
+			return LineGraph.this.createGraphLine(
 					startIntersection.getRelativeX(),
 					startIntersection.getRelativeY(),
 					endIntersection.getRelativeX(),
-					endIntersection.getRelativeY());
-			line.setStroke(color);
-			line.setStrokeWidth(LineGraph.this.graphStrokeWidth);
-
-			return line;
+					endIntersection.getRelativeY(),
+					color);
 		}
 
 		protected Circle getCircle(Paint color) {
+			return this.getCircle(
+					color, this.getRelativeX(), this.getRelativeY());
+		}
+
+		protected Circle getCircle(
+				Paint color,
+				double relativeX, double relativeY) {
 			Circle circle = new Circle(
-					this.getRelativeX(),
-					this.getRelativeY(),
+					relativeX,
+					relativeY,
 					LineGraph.this.graphPointRadius, color);
 			Tooltip.install(circle, new Tooltip(this.x + " | " + this.y));
 			return circle;
 		}
 	}
 
+	/**
+	 * Derives the points of a graph from the points of another graph.
+	 */
+	protected final class Overlay {
+		private final Graph graph;
+		private final Statistic statistic;
+		private final RollingStatistics statistics;
+
+		protected Overlay(
+				Graph graph,
+				Statistic statistic,
+				RollingStatistics statistics) {
+			this.graph = graph;
+			this.statistic = statistic;
+			this.statistics = statistics;
+		}
+
+		protected Graph getGraph() {
+			return this.graph;
+		}
+
+		protected void add(double x, double y) {
+			this.statistics.add(y);
+			this.graph.appendPoint(x, this.statistics.get(this.statistic));
+		}
+	}
+
+	/**
+	 * A graph, whose points are only kept in its {@link SeriesIndex
+	 * SeriesIndex}. {@link Point Points} are created while rendering,
+	 * where clipping and tooltips need them.
+	 */
 	protected final class Graph {
 		private Paint color;
-		private ArrayList<Point> points = new ArrayList<>();
+		private ArrayList<Overlay> overlays = new ArrayList<>();
+		private SeriesIndex index = new SeriesIndex();
+		private Projection projection = new Projection();
 		private Group group = new Group();
+		private final TiledSeries source;
+		private volatile boolean invalid = true;
+		private Runnable feed = null;
+		private boolean bars = false;
+		private boolean refilled = false;
 
 		protected Graph(Paint color) {
+			this(color, null);
+		}
+
+		protected Graph(Paint color, TiledSeries source) {
 			this.color = color;
+			this.source = source;
 			this.group.setManaged(false);
 		}
 
+		protected boolean isSourced() {
+			return this.source != null;
+		}
+
+		/**
+		 * Requests the visible points from the source,
+		 * replacing the current points once they are available.
+		 */
+		protected void requestPoints() {
+			final LineGraph graph = LineGraph.this;
+			this.source.request(
+					Math.min(graph.xStart, graph.xEnd),
+					Math.max(graph.xStart, graph.xEnd),
+					Math.abs(graph.xEnd - graph.xStart) / graph.width,
+					this::setPoints);
+		}
+
+		/**
+		 * Replaces all points. The graph is rebuilt on the next render.
+		 */
+		private void replacePoints(double[] xs, double[] ys, int count) {
+			this.index = new SeriesIndex();
+			this.addPoints(xs, ys, count);
+		}
+
+		private void setPoints(double[][] coordinates) {
+			this.index = new SeriesIndex();
+			this.index.reserve(coordinates.length);
+			for (double[] coordinate : coordinates) {
+				this.appendPoint(coordinate[0], coordinate[1]);
+			}
+			this.updateGroup();
+		}
+
 		protected Paint getColor() {
 			return this.color;
 		}
 
-		protected void addPoint(Point point) {
-			this.points.add(point);
+		protected void addPoint(double x, double y) {
+			this.appendPoint(x, y);
+			this.updateGroupWithOverlays();
+		}
+
+		protected void addPoints(double[] xs, double[] ys, int count) {
+			this.index.reserve(count);
+			for (int i = 0; i < count; i++) {
+				this.appendPoint(xs[i], ys[i]);
+			}
+			this.updateGroupWithOverlays();
+		}
+
+		/**
+		 * Takes over the arrays as the points of an empty graph, building
+		 * its index in <i>O(n)</i> instead of appending every point.
+		 */
+		private void adoptPoints(double[] xs, double[] ys, int count) {
+			this.index = new SeriesIndex(xs, ys, count);
+			this.updateGroupWithOverlays();
+		}
+
+		protected SeriesIndex getIndex() {
+			return this.index;
+		}
+
+		protected void addOverlay(Overlay overlay) {
+			final SeriesIndex index = this.index;
+			for (int i = 0; i < index.size(); i++) {
+				overlay.add(index.getX(i), index.getY(i));
+			}
+			this.overlays.add(overlay);
+		}
+
+		protected RangeAggregate aggregate(double xStart, double xEnd) {
+			return this.index.aggregate(xStart, xEnd);
+		}
+
+		private void appendPoint(double x, double y) {
+			this.index.add(x, y);
+			for (Overlay overlay : this.overlays) {
+				overlay.add(x, y);
+			}
+		}
+
+		private void updateGroupWithOverlays() {
 			this.updateGroup();
+			for (Overlay overlay : this.overlays) {
+				overlay.getGraph().updateGroupWithOverlays();
+			}
 		}
 
 		protected Group getGroup() {
@@ -205,34 +383,95 @@ public class LineGraph extends VBox {
 		}
 
 		protected void updateGroup() {
-			Task<Void> task = new Task<Void>() {
-				@Override
-				protected Void call() throws Exception {
-					Platform.runLater(() -> {
-						final ArrayList<Point> points = Graph.this.points;
-						final Group group = Graph.this.group;
-						group.getChildren().clear();
-						if (points.size() != 0) {
-							for (int i = 0; i < points.size(); i++) {
-								if (points.get(i).isInGraph()) {
-									group.getChildren().add(
-											points.get(i).getCircle(
-												Graph.this.color));
-								}
-								if (i > 0) {
-									Line line = points.get(i - 1).getLineTo(
-											points.get(i), Graph.this.color);
-									if (line != null) {
-										group.getChildren().add(line);
-									}
-								}
-							}
-						}
-					});
-					return null;
+			this.invalid = true;
+			LineGraph.this.scheduleRender();
+		}
+
+		/**
+		 * Rebuilds the group.
+		 * Has to be called on the JavaFX application thread.
+		 */
+		protected void render() {
+			this.invalid = false;
+			if (this.bars) {
+				this.renderBars();
+				return;
+			}
+			final LineGraph graph = LineGraph.this;
+			final SeriesIndex index = this.index;
+			final Group group = this.group;
+			final int count = index.size();
+			this.projection.update(
+					index, count, graph.scaleVersion,
+					graph.xScale, graph.xStart, graph.xScaleFactor,
+					graph.yScale, graph.yStart, graph.yScaleFactor);
+			final float[] xs = this.projection.getXs();
+			final float[] ys = this.projection.getYs();
+			final ArrayList<Node> nodes = new ArrayList<>();
+			boolean previousInGraph = false;
+			for (int i = 0; i < count; i++) {
+				final double x = index.getX(i);
+				final double y = index.getY(i);
+				final boolean inGraph = graph.isInGraph(x, y);
+				if (inGraph) {
+					nodes.add(new Point(x, y)
+							.getCircle(this.color, xs[i], ys[i]));
 				}
-			};
-			task.run();
+				if (i > 0) {
+					// Only lines leaving the scale need to be clipped
+					Line line = previousInGraph && inGraph
+							? graph.createGraphLine(
+									xs[i - 1], ys[i - 1],
+									xs[i], ys[i],
+									this.color)
+							: new Point(index.getX(i - 1), index.getY(i - 1))
+								.getLineTo(new Point(x, y), this.color);
+					if (line != null) {
+						nodes.add(line);
+					}
+				}
+				previousInGraph = inGraph;
+			}
+			group.getChildren().setAll(nodes);
+		}
+
+		/**
+		 * Rebuilds the group as bars. Every two consecutive points form a
+		 * bar from the X-value of the first to the X-value of the second,
+		 * rising from zero to the Y-value of the first.
+		 */
+		private void renderBars() {
+			final LineGraph graph = LineGraph.this;
+			final SeriesIndex index = this.index;
+			final ArrayList<Node> nodes = new ArrayList<>();
+			final double xMin = Math.min(graph.xStart, graph.xEnd);
+			final double xMax = Math.max(graph.xStart, graph.xEnd);
+			final double yMin = Math.min(graph.yStart, graph.yEnd);
+			final double yMax = Math.max(graph.yStart, graph.yEnd);
+			for (int i = 0; i + 1 < index.size(); i += 2) {
+				final double left = Math.max(xMin, index.getX(i));
+				final double right = Math.min(xMax, index.getX(i + 1));
+				final double top = Math.min(yMax, index.getY(i));
+				final double bottom = Math.max(yMin, Math.min(yMax, 0));
+				if (left >= right || top <= bottom) {
+					continue;
+				}
+				final Rectangle bar = new Rectangle(
+						graph.xScale + (left - graph.xStart) * graph.xScaleFactor,
+						graph.yScale - (top - graph.yStart) * graph.yScaleFactor,
+						(right - left) * graph.xScaleFactor,
+						(top - bottom) * graph.yScaleFactor);
+				bar.setFill(this.color);
+				Tooltip.install(bar, new Tooltip(
+						index.getX(i) + " - " + index.getX(i + 1)
+							+ " | " + index.getY(i)));
+				nodes.add(bar);
+			}
+			this.group.getChildren().setAll(nodes);
+		}
+
+		protected boolean isInvalid() {
+			return this.invalid;
 		}
 	}
 
@@ -341,6 +580,28 @@ public class LineGraph extends VBox {
 			return this.font;
 		}
 
+		/**
+		 * Formats a value for a mark on the X-axis.
+		 * @param value the value of the mark
+		 * @return the text of the mark
+		 */
+		protected String formatX(double value) {
+			return String.format(
+					"% " + this.digitsX + "." + this.commaDigitsX + "f",
+					value);
+		}
+
+		/**
+		 * Formats a value for a mark on the Y-axis.
+		 * @param value the value of the mark
+		 * @return the text of the mark
+		 */
+		protected String formatY(double value) {
+			return String.format(
+					"% " + this.digitsY + "." + this.commaDigitsY + "f",
+					value);
+		}
+
 		public double getSizeX(LineGraph graph) {
 			final Text text = new Text(String.format(
 					"% " + this.digitsX + "." + this.commaDigitsX + "f",
@@ -394,6 +655,14 @@ public class LineGraph extends VBox {
 		this.setHeight((this.yStart - this.yEnd) * this.yScaleFactor);
 		this.scaleGroup.setManaged(false);
 		this.markingGroup.setManaged(false);
+		this.axisGroup.setManaged(false);
+		// Axes and markings only change with the scale, so they are cached
+		this.axisGroup.setCache(true);
+		this.axisGroup.setCacheHint(CacheHint.SPEED);
+		this.markingGroup.setCache(true);
+		this.markingGroup.setCacheHint(CacheHint.SPEED);
+		this.scaleGroup.getChildren().addAll(this.axisGroup, this.markingGroup);
+		RenderCoordinator.getDefault().register(this);
 		this.updateGroups();
 	}
 
@@ -442,10 +711,41 @@ public class LineGraph extends VBox {
 				throw new IllegalArgumentException(
 						"Coordinates have to consist of two values");
 			}
-			graph.addPoint(new Point(coordinates[i][0], coordinates[i][1]));
+			graph.addPoint(coordinates[i][0], coordinates[i][1]);
 		}
-		this.graphs.add(graph);
-		this.updateGroups();
+		this.addGraphLayer(graph);
+		return this.graphCount++;
+	}
+
+	/**
+	 * Adds a graph from separate arrays of X- and Y-values,
+	 * rebuilding its group only once.<br/>
+	 * The arrays are taken over by the graph without copying
+	 * and must not be modified afterwards.
+	 *
+	 * @param xs the X-values
+	 * @param ys the Y-values
+	 * @param count the amount of points to take from the arrays
+	 * @param color the color
+	 * @return index of the graph
+	 */
+	int addGraph(double[] xs, double[] ys, int count, Paint color) {
+		return this.addGraph(xs, ys, count, color, false);
+	}
+
+	/**
+	 * Adds a graph from separate arrays of X- and Y-values, which is
+	 * drawn as bars if <code>bars</code> is set.
+	 * @see #isBarGraph(int)
+	 */
+	int addGraph(
+			double[] xs, double[] ys, int count,
+			Paint color,
+			boolean bars) {
+		Graph graph = new Graph(color);
+		graph.bars = bars;
+		graph.adoptPoints(xs, ys, count);
+		this.addGraphLayer(graph);
 		return this.graphCount++;
 	}
 
@@ -460,6 +760,180 @@ public class LineGraph extends VBox {
 		return this.addGraph(new double[][] {}, color);
 	}
 
+	/**
+	 * Adds a graph bound to a {@link SeriesSource SeriesSource}.<br/>
+	 * Instead of holding all of its points, the graph requests the
+	 * visible points at the resolution of the scale whenever the scale
+	 * changes. Points are fetched asynchronously in tiles, of which
+	 * the most recently used ones are cached.
+	 *
+	 * @param source the source of the points
+	 * @param color the color
+	 * @return index of the graph
+	 */
+	public int addGraph(SeriesSource source, Paint color) {
+		if (source == null) {
+			throw new IllegalArgumentException("The source can not be null");
+		}
+		this.addGraphLayer(new Graph(
+				color,
+				new TiledSeries(source, SOURCE_CACHE_TILES)));
+		return this.graphCount++;
+	}
+
+	/**
+	 * Adds a graph fed by a {@link SharedSeriesBuffer SharedSeriesBuffer},
+	 * into which another process writes points.<br/>
+	 * The buffer is drained on every pulse and all points drained at once
+	 * are added together. The line graph becomes the single consumer of
+	 * the buffer until the graph is {@link #detachGraph(int) detached}.
+	 *
+	 * @param buffer the buffer to drain
+	 * @param color the color
+	 * @return index of the graph
+	 */
+	public int addGraph(SharedSeriesBuffer buffer, Paint color) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("The buffer can not be null");
+		}
+		final Graph graph = new Graph(color);
+		final int limit = Math.min(buffer.getCapacity(), SHARED_DRAIN_LIMIT);
+		final double[] xs = new double[limit];
+		final double[] ys = new double[limit];
+		final int[] count = {0};
+		final SharedSeriesBuffer.PointConsumer consumer = (x, y) -> {
+			xs[count[0]] = x;
+			ys[count[0]++] = y;
+		};
+		graph.feed = () -> {
+			count[0] = 0;
+			if (buffer.drain(consumer, limit) > 0) {
+				graph.addPoints(xs, ys, count[0]);
+			}
+		};
+		this.addFeed(graph.feed);
+		this.addGraphLayer(graph);
+		return this.graphCount++;
+	}
+
+	/**
+	 * Stops feeding a graph, which was added with a
+	 * {@link SharedSeriesBuffer SharedSeriesBuffer}
+	 * or a {@link Histogram Histogram}.
+	 * Its points remain.
+	 *
+	 * @param graph the index of the graph
+	 * @throws IndexOutOfBoundsException if the graph index does not exist
+	 */
+	public void detachGraph(int graph) throws IndexOutOfBoundsException {
+		final Graph target = this.graphs.get(graph);
+		if (target.feed != null) {
+			this.removeFeed(target.feed);
+			target.feed = null;
+		}
+	}
+
+	/**
+	 * Adds a graph displaying a {@link Histogram Histogram}.<br/>
+	 * The graph is updated from a snapshot of the histogram four times
+	 * a second, so that recording into the histogram is never blocked
+	 * by rendering.
+	 *
+	 * @param histogram the histogram to display
+	 * @param style how to display the histogram
+	 * @param color the color
+	 * @return index of the graph
+	 */
+	public int addHistogram(
+			Histogram histogram,
+			HistogramStyle style,
+			Paint color) {
+		if (histogram == null || style == null) {
+			throw new IllegalArgumentException(
+					"The histogram and the style can not be null");
+		}
+		final Graph graph = new Graph(color);
+		graph.bars = style == HistogramStyle.BARS;
+		graph.refilled = true;
+		final long[] refreshed = {0};
+		graph.feed = () -> {
+			final long now = System.nanoTime();
+			if (refreshed[0] != 0
+					&& now - refreshed[0] < HISTOGRAM_REFRESH_INTERVAL) {
+				return;
+			}
+			refreshed[0] = now;
+			final Histogram.Snapshot snapshot = histogram.getSnapshot();
+			if (graph.bars) {
+				final double[] xs = new double[2 * snapshot.getBucketCount()];
+				final double[] ys = new double[xs.length];
+				int count = 0;
+				for (int i = 0; i < snapshot.getBucketCount(); i++) {
+					if (snapshot.getCount(i) != 0) {
+						xs[count] = snapshot.getLowerBound(i);
+						ys[count++] = snapshot.getCount(i);
+						xs[count] = snapshot.getUpperBound(i) + 1.0;
+						ys[count++] = snapshot.getCount(i);
+					}
+				}
+				graph.replacePoints(xs, ys, count);
+			} else if (snapshot.getTotalCount() != 0) {
+				final double[] ys = new double[PERCENTILES.length];
+				for (int i = 0; i < ys.length; i++) {
+					ys[i] = snapshot.getValueAtPercentile(PERCENTILES[i]);
+				}
+				graph.replacePoints(PERCENTILES, ys, ys.length);
+			}
+		};
+		this.addFeed(graph.feed);
+		this.addGraphLayer(graph);
+		return this.graphCount++;
+	}
+
+	/**
+	 * Adds a graph, which follows a {@link Statistic Statistic}
+	 * over the last points of another graph.<br/>
+	 * The overlay is computed incrementally whenever the other graph
+	 * is extended. Percentiles are approximated with a relative error
+	 * below 1%.
+	 *
+	 * @param graph the index of the graph to follow
+	 * @param statistic the statistic to display
+	 * @param windowSize the amount of points to compute the statistic over
+	 * @param color the color
+	 * @return index of the overlay
+	 * @throws IndexOutOfBoundsException if the graph index does not exist
+	 * @throws IllegalStateException if the graph is bound to a source
+	 * 	or displays a histogram, as its points are replaced instead
+	 * 	of extended
+	 */
+	public int addOverlay(
+			int graph,
+			Statistic statistic,
+			int windowSize,
+			Paint color) throws IndexOutOfBoundsException {
+		if (statistic == null) {
+			throw new IllegalArgumentException(
+					"The statistic can not be null");
+		}
+		final Graph source = this.graphs.get(graph);
+		if (source.isSourced()) {
+			throw new IllegalStateException(
+					"A graph bound to a source can not be overlayed");
+		}
+		if (source.refilled) {
+			throw new IllegalStateException(
+					"A graph displaying a histogram can not be overlayed");
+		}
+		final Graph overlay = new Graph(color);
+		source.addOverlay(new Overlay(
+				overlay,
+				statistic,
+				new RollingStatistics(windowSize)));
+		this.addGraphLayer(overlay);
+		return this.graphCount++;
+	}
+
 	/**
 	 * Extends an existing graph by one point.
 	 * Coordinates are an array with the x and y values.
@@ -473,8 +947,182 @@ public class LineGraph extends VBox {
 			throw new IllegalArgumentException(
 					"Coordinates have to consist of two values");
 		}
-		this.graphs.get(graph).addPoint(
-				new Point(coordinates[0], coordinates[1]));
+		final Graph target = this.graphs.get(graph);
+		if (target.isSourced()) {
+			throw new IllegalStateException(
+					"A graph bound to a source can not be extended");
+		}
+		target.addPoint(coordinates[0], coordinates[1]);
+	}
+
+	/**
+	 * Extends an existing graph by one point at a timestamp
+	 * of the {@link TimeAxis TimeAxis}.
+	 *
+	 * @param graph the index of the graph to extend
+	 * @param time the timestamp in the unit of the time axis
+	 * @param y the Y-value of the point
+	 * @throws IllegalStateException if no time axis is set
+	 */
+	public void extendGraphAt(int graph, long time, double y) {
+		this.extendGraph(graph, this.requireTimeAxis().toX(time), y);
+	}
+
+	/**
+	 * Aggregates the Y-values of all points of a graph with X-values
+	 * between <code>xStart</code> and <code>xEnd</code>, both inclusive.<br/>
+	 * Runs in <i>O(log n)</i> as long as the graph was extended
+	 * in ascending order of its X-values.
+	 *
+	 * @param graph the index of the graph
+	 * @param xStart the smallest X-value to include
+	 * @param xEnd the largest X-value to include
+	 * @return the count, sum, minimum and maximum within the range
+	 * @throws IndexOutOfBoundsException if the graph index does not exist
+	 */
+	public RangeAggregate getAggregate(int graph, double xStart, double xEnd)
+			throws IndexOutOfBoundsException {
+		if (xStart > xEnd) {
+			throw new IllegalArgumentException(
+					"The start of the range can not exceed its end");
+		}
+		return this.graphs.get(graph).aggregate(xStart, xEnd);
+	}
+
+	/**
+	 * Aggregates the Y-values of all points of a graph with timestamps
+	 * between <code>start</code> and <code>end</code>, both inclusive.
+	 *
+	 * @param graph the index of the graph
+	 * @param start the first timestamp to include
+	 * @param end the last timestamp to include
+	 * @return the count, sum, minimum and maximum within the range
+	 * @throws IllegalStateException if no time axis is set
+	 * @see #getAggregate(int, double, double)
+	 */
+	public RangeAggregate getTimeAggregate(int graph, long start, long end) {
+		final TimeAxis axis = this.requireTimeAxis();
+		return this.getAggregate(graph, axis.toX(start), axis.toX(end));
+	}
+
+	/**
+	 * Writes a snapshot of the complete line graph to a channel.<br/>
+	 * The snapshot contains the scale, the {@link Marking Marking} and
+	 * every graph with its color and points. Overlays are stored
+	 * as plain graphs. Colors have to be representable by
+	 * {@link Paint#valueOf(String) Paint.valueOf}.
+	 *
+	 * @param channel the channel to write to
+	 * @throws IOException if the channel can not be written to
+	 */
+	public void save(WritableByteChannel channel) throws IOException {
+		ChartSnapshot.write(this, channel);
+	}
+
+	/**
+	 * Writes a snapshot of the complete line graph to a file.
+	 *
+	 * @param path the file to write to
+	 * @throws IOException if the file can not be written
+	 * @see #save(WritableByteChannel)
+	 */
+	public void save(Path path) throws IOException {
+		ChartSnapshot.write(this, path);
+	}
+
+	/**
+	 * Restores a line graph from a snapshot read from a channel.
+	 *
+	 * @param channel the channel to read from
+	 * @return the restored line graph
+	 * @throws IOException if the channel can not be read
+	 * 	or does not contain a valid snapshot
+	 * @see #save(WritableByteChannel)
+	 */
+	public static LineGraph load(ReadableByteChannel channel)
+			throws IOException {
+		return ChartSnapshot.read(channel);
+	}
+
+	/**
+	 * Restores a line graph from a snapshot file,
+	 * which is mapped into memory.
+	 *
+	 * @param path the file to read from
+	 * @return the restored line graph
+	 * @throws IOException if the file can not be read
+	 * 	or does not contain a valid snapshot
+	 * @see #save(Path)
+	 */
+	public static LineGraph load(Path path) throws IOException {
+		return ChartSnapshot.read(path);
+	}
+
+	/**
+	 * Writes the line graph as SVG to a channel, leaving it open.<br/>
+	 * The SVG contains the axes, the {@link Marking Marking} and one path
+	 * per graph, clipped to the scale. Points are streamed, so that the
+	 * memory needed does not depend on the amount of points.
+	 *
+	 * @param channel the channel to write to
+	 * @param resolution the amount of buckets along the X-axis, of which
+	 * 	each keeps its first, last, smallest and largest point,
+	 * 	or <b>0</b> to write every point
+	 * @throws IOException if the channel can not be written to
+	 */
+	public void exportSvg(WritableByteChannel channel, int resolution)
+			throws IOException {
+		ChartExport.writeSvg(this, channel, resolution);
+	}
+
+	/**
+	 * Writes the line graph as SVG to a file.
+	 *
+	 * @param path the file to write to
+	 * @param resolution the amount of buckets along the X-axis
+	 * 	or <b>0</b> to write every point
+	 * @throws IOException if the file can not be written
+	 * @see #exportSvg(WritableByteChannel, int)
+	 */
+	public void exportSvg(Path path, int resolution) throws IOException {
+		ChartExport.writeSvg(this, path, resolution);
+	}
+
+	/**
+	 * Writes the points of a graph as CSV to a channel, leaving it open.
+	 * <br/>
+	 * Points are streamed, so that the memory needed does not depend
+	 * on the amount of points.
+	 *
+	 * @param graph the index of the graph
+	 * @param channel the channel to write to
+	 * @param resolution the amount of buckets between the smallest and the
+	 * 	largest X-value, of which each keeps its first, last, smallest
+	 * 	and largest point, or <b>0</b> to write every point
+	 * @throws IOException if the channel can not be written to
+	 * @throws IndexOutOfBoundsException if the graph index does not exist
+	 */
+	public void exportCsv(
+			int graph,
+			WritableByteChannel channel,
+			int resolution) throws IOException, IndexOutOfBoundsException {
+		ChartExport.writeCsv(this, graph, channel, resolution);
+	}
+
+	/**
+	 * Writes the points of a graph as CSV to a file.
+	 *
+	 * @param graph the index of the graph
+	 * @param path the file to write to
+	 * @param resolution the amount of buckets between the smallest and the
+	 * 	largest X-value or <b>0</b> to write every point
+	 * @throws IOException if the file can not be written
+	 * @throws IndexOutOfBoundsException if the graph index does not exist
+	 * @see #exportCsv(int, WritableByteChannel, int)
+	 */
+	public void exportCsv(int graph, Path path, int resolution)
+			throws IOException, IndexOutOfBoundsException {
+		ChartExport.writeCsv(this, graph, path, resolution);
 	}
 
 	/**
@@ -484,7 +1132,7 @@ public class LineGraph extends VBox {
 	 */
 	public void setMarking(Marking marking) {
 		this.marking = marking;
-		this.updateGroups();
+		this.updateMarking();
 	}
 
 	/**
@@ -494,6 +1142,35 @@ public class LineGraph extends VBox {
 		this.setMarking(null);
 	}
 
+	/**
+	 * Sets the {@link TimeAxis TimeAxis}, which turns the X-values into
+	 * timestamps and places the marks of the X-axis at calendar-friendly
+	 * intervals.<br/>
+	 * <b>null</b> can be used to unset the time axis.
+	 * Existing points are not converted.
+	 * @param timeAxis the time axis to set
+	 */
+	public void setTimeAxis(TimeAxis timeAxis) {
+		this.timeAxis = timeAxis;
+		this.updateMarking();
+	}
+
+	/**
+	 * Returns the {@link TimeAxis TimeAxis} of the X-axis.
+	 * @return the time axis or <b>null</b> if none is set
+	 */
+	public TimeAxis getTimeAxis() {
+		return this.timeAxis;
+	}
+
+	/**
+	 * Returns the {@link Marking Marking} of the scale.
+	 * @return the marking or <b>null</b> if none is set
+	 */
+	public Marking getMarking() {
+		return this.marking;
+	}
+
 	/**
 	 * Returns the X-coordinate of the origin.
 	 * @return the X-coordinate of the origin
@@ -510,6 +1187,22 @@ public class LineGraph extends VBox {
 		return this.yScale;
 	}
 
+	/**
+	 * Returns the width of the scale.
+	 * @return the width of the scale
+	 */
+	public double getScaleWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the height of the scale.
+	 * @return the height of the scale
+	 */
+	public double getScaleHeight() {
+		return this.height;
+	}
+
 	/**
 	 * Returns the min value of the scale on the X-axis.
 	 * @return the min value of the scale on the X-axis
@@ -650,6 +1343,17 @@ public class LineGraph extends VBox {
 		this.updateGroups();
 	}
 
+	/**
+	 * Changes the scale of the X-axis to a range of timestamps.
+	 * @param start the first timestamp
+	 * @param end the last timestamp
+	 * @throws IllegalStateException if no time axis is set
+	 */
+	public void setTimeScale(long start, long end) {
+		final TimeAxis axis = this.requireTimeAxis();
+		this.setXScale(axis.toX(start), axis.toX(end));
+	}
+
 	/**
 	 * Changes the scale of the Y-axis.
 	 * @param yStart Min Y-value
@@ -669,7 +1373,8 @@ public class LineGraph extends VBox {
 	 */
 	public void setScaleStrokeWidth(double scaleStrokeWidth) {
 		this.scaleStrokeWidth = scaleStrokeWidth;
-		this.updateGroups();
+		this.axesInvalid = true;
+		this.updateMarking();
 	}
 
 	/**
@@ -678,7 +1383,7 @@ public class LineGraph extends VBox {
 	 */
 	public void setGraphStrokeWidth(double graphStrokeWidth) {
 		this.graphStrokeWidth = graphStrokeWidth;
-		this.updateGroups();
+		this.invalidateGraphs();
 	}
 
 	/**
@@ -688,7 +1393,7 @@ public class LineGraph extends VBox {
 	 */
 	public void setGraphPointradius(double graphPointRadius) {
 		this.graphPointRadius = graphPointRadius;
-		this.updateGroups();
+		this.invalidateGraphs();
 	}
 
 	/**
@@ -715,6 +1420,49 @@ public class LineGraph extends VBox {
 		return this.graphs.get(graph).getGroup();
 	}
 
+	/**
+	 * Returns the {@link RenderCoordinator RenderCoordinator}
+	 * the line graph is registered with.
+	 * @return the coordinator or <b>null</b> if the line graph
+	 * 	renders on its own
+	 */
+	public RenderCoordinator getRenderCoordinator() {
+		return this.coordinator;
+	}
+
+	void setRenderCoordinator(RenderCoordinator coordinator) {
+		this.coordinator = coordinator;
+		this.updateGroups();
+	}
+
+	double getXScaleFactor() {
+		return this.xScaleFactor;
+	}
+
+	double getYScaleFactor() {
+		return this.yScaleFactor;
+	}
+
+	int getGraphAmount() {
+		return this.graphs.size();
+	}
+
+	Paint getGraphColor(int graph) {
+		return this.graphs.get(graph).getColor();
+	}
+
+	/**
+	 * Returns whether a graph is drawn as bars, each formed by two
+	 * consecutive points, instead of as a line.
+	 */
+	boolean isBarGraph(int graph) {
+		return this.graphs.get(graph).bars;
+	}
+
+	SeriesIndex getSeriesIndex(int graph) {
+		return this.graphs.get(graph).getIndex();
+	}
+
 	/**
 	 * Returns the distance from the Y-axis
 	 * to the left side of a marking including the text.
@@ -768,86 +1516,270 @@ public class LineGraph extends VBox {
 	/**
 	 * Reconstructs all groups.<br/>
 	 * If a parameter changes, e.g. by moving the graph, the groups have to be
-	 * build acording to these changes.
+	 * build acording to these changes.<br/>
+	 * Changes which only affect some layers should invalidate those instead.
 	 */
 	private void updateGroups() {
+		this.scaleVersion++;
+		this.axesInvalid = true;
+		this.markingInvalid = true;
+		this.invalidateGraphs();
+	}
+
+	/**
+	 * Reconstructs the markings, which depend on the
+	 * {@link Marking Marking} but not on the graphs.
+	 */
+	private void updateMarking() {
+		this.markingInvalid = true;
+		this.scheduleRender();
+	}
+
+	/**
+	 * Reconstructs the groups of all graphs, leaving the axes
+	 * and markings untouched.
+	 */
+	private void invalidateGraphs() {
+		for (Graph g : this.graphs) {
+			g.invalid = true;
+		}
+		this.scheduleRender();
+	}
+
+	/**
+	 * Adds a graph, whose group has to be added to the children.
+	 */
+	private void addGraphLayer(Graph graph) {
+		this.graphs.add(graph);
+		this.layersInvalid = true;
+		this.scheduleRender();
+	}
+
+	/**
+	 * Runs a feed on every pulse, until it is removed.
+	 */
+	private void addFeed(Runnable feed) {
 		Platform.runLater(() -> {
-			final LineGraph graph = LineGraph.this;
-			final Marking marking = graph.marking;
-			graph.getChildren().clear();
-			graph.scaleGroup.getChildren().clear();
-			this.markingGroup.getChildren().clear();
-			graph.addLine(
-					graph.xScale, graph.yScale,
-					graph.xScale, graph.yScale - graph.height,
-					graph.scaleStrokeWidth, graph.scaleGroup);
-			graph.addLine(
-					graph.xScale, graph.yScale,
-					graph.xScale + graph.width, graph.yScale,
-					graph.scaleStrokeWidth, graph.scaleGroup);
-			if (marking != null) {
-				int xMarkings = marking.getAmountX() - 1;
-				int yMarkings = marking.getAmountY() - 1;
-				for (int i = 0; i <= xMarkings; i++) {
-					double markingX = graph.xScale
-							+ (graph.xEnd - graph.xStart)
-								* graph.xScaleFactor / xMarkings * i;
-					graph.addLine(
-							markingX,
-							graph.yScale,
-							markingX,
-							graph.yScale + marking.getLength(),
-							graph.scaleStrokeWidth,
-							this.markingGroup);
-					Text text = new Text(markingX,
-							graph.yScale + 1.5 * marking.getLength(),
-							String.format(
-									"% " + marking.getDigitsX()
-										+ "." + marking.getCommaDigitsX()
-										+ "f",
-									graph.xStart
-										+ (double)i / (double)xMarkings
-										* (graph.xEnd - graph.xStart)));
-					text.setFont(marking.getFont());
-					text.relocate(
-							text.getX() - text.getLayoutBounds().getWidth() / 2,
-							text.getY());
-					this.markingGroup.getChildren().add(text);
-				}
-				for (int j = 0; j <= yMarkings; j++) {
-					double markingY = graph.yScale
-							- (graph.yEnd - graph.yStart)
-								* graph.yScaleFactor / yMarkings * j;
-					graph.addLine(
-							graph.xScale, markingY,
-							graph.xScale - marking.getLength(), markingY,
-							graph.scaleStrokeWidth, this.markingGroup);
-					Text text = new Text(
-							graph.xScale - 1.5 * marking.getLength(),
-							markingY,
-							String.format(
-									"% " + marking.getDigitsY()
-										+ "." + marking.getCommaDigitsY() + "f",
-									graph.yStart + (double)j / (double)yMarkings
-										* (graph.yEnd - graph.yStart)));
-					text.setFont(marking.getFont());
-					text.relocate(
-							text.getX()
-								- text.getLayoutBounds().getWidth(),
-							text.getY()
-								- text.getLayoutBounds().getHeight() / 2);
-					this.markingGroup.getChildren().add(text);
-				}
+			this.feeds.add(feed);
+			if (this.feedTimer == null) {
+				this.feedTimer = new AnimationTimer() {
+					@Override
+					public void handle(long now) {
+						for (Runnable f : new ArrayList<>(LineGraph.this.feeds)) {
+							f.run();
+						}
+					}
+				};
+				this.feedTimer.start();
+			}
+		});
+	}
+
+	private void removeFeed(Runnable feed) {
+		Platform.runLater(() -> {
+			this.feeds.remove(feed);
+			if (this.feeds.isEmpty() && this.feedTimer != null) {
+				this.feedTimer.stop();
+				this.feedTimer = null;
 			}
-			graph.scaleGroup.getChildren().add(this.markingGroup);
-			graph.getChildren().add(graph.scaleGroup);
-			for (Graph g : graph.graphs) {
+		});
+	}
+
+	/**
+	 * Schedules a render of all invalidated layers, either by the
+	 * {@link RenderCoordinator RenderCoordinator} or on the next pulse.
+	 * Further changes until then are rendered together.
+	 */
+	private void scheduleRender() {
+		final RenderCoordinator coordinator = this.coordinator;
+		if (coordinator != null) {
+			coordinator.requestRender(this);
+		} else if (this.renderScheduled.compareAndSet(false, true)) {
+			Platform.runLater(this::render);
+		}
+	}
+
+	/**
+	 * Rebuilds all invalidated layers.<br/>
+	 * Has to be called on the JavaFX application thread.
+	 */
+	void render() {
+		this.renderScheduled.set(false);
+		if (this.axesInvalid) {
+			this.axesInvalid = false;
+			this.renderAxes();
+		}
+		if (this.markingInvalid) {
+			this.markingInvalid = false;
+			this.renderMarking();
+		}
+		if (this.layersInvalid) {
+			this.layersInvalid = false;
+			final ArrayList<Node> layers = new ArrayList<>();
+			layers.add(this.scaleGroup);
+			for (Graph g : this.graphs) {
+				layers.add(g.getGroup());
+			}
+			this.getChildren().setAll(layers);
+		}
+		for (Graph g : this.graphs) {
+			if (g.isInvalid()) {
 				try {
-					g.updateGroup();
+					if (g.isSourced()) {
+						g.requestPoints();
+					} else {
+						g.render();
+					}
 				} catch (Exception e) {}
-				graph.getChildren().add(g.getGroup());
 			}
-		});
+		}
+	}
+
+	/**
+	 * Rebuilds the axes.
+	 * Has to be called on the JavaFX application thread.
+	 */
+	private void renderAxes() {
+		final LineGraph graph = LineGraph.this;
+		graph.axisGroup.getChildren().clear();
+		graph.addLine(
+				graph.xScale, graph.yScale,
+				graph.xScale, graph.yScale - graph.height,
+				graph.scaleStrokeWidth, graph.axisGroup);
+		graph.addLine(
+				graph.xScale, graph.yScale,
+				graph.xScale + graph.width, graph.yScale,
+				graph.scaleStrokeWidth, graph.axisGroup);
+	}
+
+	/**
+	 * Rebuilds the markings.
+	 * Has to be called on the JavaFX application thread.
+	 */
+	private void renderMarking() {
+		final LineGraph graph = LineGraph.this;
+		final Marking marking = graph.marking;
+		this.markingGroup.getChildren().clear();
+		if (marking != null) {
+			int xMarkings = marking.getAmountX() - 1;
+			int yMarkings = marking.getAmountY() - 1;
+			final TimeAxis.Ticks ticks = graph.getTimeTicks();
+			if (ticks != null) {
+				for (int i = 0; i < ticks.size(); i++) {
+					this.addMarkingX(
+							graph.xScale
+								+ (ticks.getX(i) - graph.xStart)
+									* graph.xScaleFactor,
+							ticks.getLabel(i));
+				}
+			} else {
+				for (int i = 0; i <= xMarkings; i++) {
+					this.addMarkingX(
+							graph.xScale
+								+ (graph.xEnd - graph.xStart)
+									* graph.xScaleFactor / xMarkings * i,
+							marking.formatX(graph.xStart
+								+ (double)i / (double)xMarkings
+								* (graph.xEnd - graph.xStart)));
+				}
+			}
+			for (int j = 0; j <= yMarkings; j++) {
+				double markingY = graph.yScale
+						- (graph.yEnd - graph.yStart)
+							* graph.yScaleFactor / yMarkings * j;
+				graph.addLine(
+						graph.xScale, markingY,
+						graph.xScale - marking.getLength(), markingY,
+						graph.scaleStrokeWidth, this.markingGroup);
+				Text text = new Text(
+						graph.xScale - 1.5 * marking.getLength(),
+						markingY,
+						marking.formatY(graph.yStart
+								+ (double)j / (double)yMarkings
+								* (graph.yEnd - graph.yStart)));
+				text.setFont(marking.getFont());
+				text.relocate(
+						text.getX()
+							- text.getLayoutBounds().getWidth(),
+						text.getY()
+							- text.getLayoutBounds().getHeight() / 2);
+				this.markingGroup.getChildren().add(text);
+			}
+		}
+	}
+
+	private boolean isInGraph(double x, double y) {
+		return x >= this.xStart
+				&& x <= this.xEnd
+				&& y >= this.yStart
+				&& y <= this.yEnd;
+	}
+
+	/**
+	 * Adds a mark with its label below the X-axis.
+	 * Has to be called on the JavaFX application thread.
+	 */
+	private void addMarkingX(double markingX, String label) {
+		this.addLine(
+				markingX,
+				this.yScale,
+				markingX,
+				this.yScale + this.marking.getLength(),
+				this.scaleStrokeWidth,
+				this.markingGroup);
+		Text text = new Text(markingX,
+				this.yScale + 1.5 * this.marking.getLength(),
+				label);
+		text.setFont(this.marking.getFont());
+		text.relocate(
+				text.getX() - text.getLayoutBounds().getWidth() / 2,
+				text.getY());
+		this.markingGroup.getChildren().add(text);
+	}
+
+	/**
+	 * Returns the marks of the {@link TimeAxis TimeAxis} within the
+	 * current scale, at most as many as the marking has on the X-axis.
+	 * @return the marks or <b>null</b> if no time axis or marking is set
+	 */
+	TimeAxis.Ticks getTimeTicks() {
+		final TimeAxis axis = this.timeAxis;
+		final Marking marking = this.marking;
+		if (axis == null || marking == null) {
+			return null;
+		}
+		return axis.getTicks(this.xStart, this.xEnd, marking.getAmountX());
+	}
+
+	private TimeAxis requireTimeAxis() {
+		if (this.timeAxis == null) {
+			throw new IllegalStateException("No time axis is set");
+		}
+		return this.timeAxis;
+	}
+
+	/**
+	 * Creates a {@link javafx.scene.shape.Line Line}
+	 * with the stroke of graphs.
+	 * @param startX the horizontal coordinate
+	 * 	of the start point of the line segment
+	 * @param startY the vertical coordinate
+	 * 	of the start point of the line segment
+	 * @param endX the horizontal coordinate
+	 * 	of the end point of the line segment
+	 * @param endY the vertical coordinate
+	 * 	of the end point of the line segment
+	 * @param color the color of the line
+	 * @return the line
+	 */
+	private Line createGraphLine(
+			double startX, double startY,
+			double endX, double endY,
+			Paint color) {
+		Line line = new Line(startX, startY, endX, endY);
+		line.setStroke(color);
+		line.setStrokeWidth(this.graphStrokeWidth);
+		return line;
 	}
 
 	/**
@@ -0,0 +1,113 @@
+package statistics;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A {@link SeriesSource SeriesSource} holding its points in memory.
+ * @author Mario Schaeper
+ */
+public class MemorySeriesSource implements SeriesSource {
+	private final DoubleBuffer coordinates;
+
+	/**
+	 * Creates a source of the given points.<br/>
+	 * Coordinates are arrays with x and y values.
+	 * @param coordinates array of coordinates
+	 */
+	public MemorySeriesSource(double[][] coordinates) {
+		final double[][] sorted = coordinates.clone();
+		Arrays.sort(sorted, Comparator.comparingDouble(point -> point[0]));
+		final double[] values = new double[sorted.length * 2];
+		for (int i = 0; i < sorted.length; i++) {
+			if (sorted[i].length != 2) {
+				throw new IllegalArgumentException(
+						"Coordinates have to consist of two values");
+			}
+			values[2 * i] = sorted[i][0];
+			values[2 * i + 1] = sorted[i][1];
+		}
+		this.coordinates = DoubleBuffer.wrap(values);
+	}
+
+	@Override
+	public double[][] getPoints(
+			double xStart, double xEnd, double resolution) {
+		return MemorySeriesSource.decimate(
+				this.coordinates, xStart, xEnd, resolution);
+	}
+
+	/**
+	 * Returns the points of alternating X- and Y-values, sorted by their
+	 * X-values, with <code>xStart &lt;= x &lt; xEnd</code>.<br/>
+	 * Of all points within the same <code>resolution</code> wide bucket
+	 * only the ones with the smallest and the largest Y-value are kept.
+	 */
+	static double[][] decimate(
+			DoubleBuffer coordinates,
+			double xStart, double xEnd,
+			double resolution) {
+		final int size = coordinates.limit() / 2;
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (coordinates.get(2 * middle) < xStart) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		final ArrayList<double[]> points = new ArrayList<>();
+		int minimum = -1;
+		int maximum = -1;
+		long bucket = Long.MIN_VALUE;
+		for (int i = low; i < size; i++) {
+			final double x = coordinates.get(2 * i);
+			if (x >= xEnd) {
+				break;
+			}
+			final long current = resolution > 0
+					? (long)Math.floor((x - xStart) / resolution)
+					: i;
+			if (current != bucket) {
+				MemorySeriesSource.addBucket(
+						coordinates, minimum, maximum, points);
+				bucket = current;
+				minimum = i;
+				maximum = i;
+			} else {
+				final double y = coordinates.get(2 * i + 1);
+				if (y < coordinates.get(2 * minimum + 1)) {
+					minimum = i;
+				}
+				if (y > coordinates.get(2 * maximum + 1)) {
+					maximum = i;
+				}
+			}
+		}
+		MemorySeriesSource.addBucket(coordinates, minimum, maximum, points);
+		return points.toArray(new double[points.size()][]);
+	}
+
+	private static void addBucket(
+			DoubleBuffer coordinates,
+			int minimum, int maximum,
+			ArrayList<double[]> points) {
+		if (minimum < 0) {
+			return;
+		}
+		final int first = Math.min(minimum, maximum);
+		final int second = Math.max(minimum, maximum);
+		points.add(new double[] {
+				coordinates.get(2 * first),
+				coordinates.get(2 * first + 1)});
+		if (second != first) {
+			points.add(new double[] {
+					coordinates.get(2 * second),
+					coordinates.get(2 * second + 1)});
+		}
+	}
+}
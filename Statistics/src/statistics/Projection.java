@@ -0,0 +1,77 @@
+package statistics;
+
+import java.util.Arrays;
+
+/**
+ * Projects the coordinates of a {@link SeriesIndex SeriesIndex} onto the
+ * screen and keeps the result in reusable <code>float</code> buffers.<br/>
+ * A projection is only recomputed when the scale changed. As long as
+ * the scale stays the same, only appended points are projected.
+ * @author Mario Schaeper
+ */
+final class Projection {
+	private float[] xs = new float[0];
+	private float[] ys = new float[0];
+	private SeriesIndex index = null;
+	private long version = -1;
+	private int size = 0;
+
+	/**
+	 * Projects the first <code>count</code> points of the index.<br/>
+	 * A screen coordinate is computed as
+	 * <code>origin + (value - start) * factor</code> on the X-axis and
+	 * <code>origin - (value - start) * factor</code> on the Y-axis.
+	 *
+	 * @param index the points to project
+	 * @param count the amount of points to project
+	 * @param version the version of the scale
+	 */
+	void update(
+			SeriesIndex index, int count, long version,
+			double xOrigin, double xStart, double xFactor,
+			double yOrigin, double yStart, double yFactor) {
+		int from = this.size;
+		if (index != this.index || version != this.version
+				|| count < this.size) {
+			from = 0;
+			this.index = index;
+			this.version = version;
+		}
+		if (count > this.xs.length) {
+			final int capacity = Math.max(count, this.xs.length << 1);
+			this.xs = Arrays.copyOf(this.xs, capacity);
+			this.ys = Arrays.copyOf(this.ys, capacity);
+		}
+		Projection.project(index.getXs(), this.xs, from, count,
+				xOrigin - xStart * xFactor, xFactor);
+		Projection.project(index.getYs(), this.ys, from, count,
+				yOrigin + yStart * yFactor, -yFactor);
+		this.size = count;
+	}
+
+	/**
+	 * Computes <code>offset + value * factor</code> for every value.<br/>
+	 * The loop body has no branches or calls, so that the JIT compiler
+	 * can vectorize it.
+	 */
+	private static void project(
+			double[] values, float[] target,
+			int from, int to,
+			double offset, double factor) {
+		for (int i = from; i < to; i++) {
+			target[i] = (float)(offset + values[i] * factor);
+		}
+	}
+
+	float[] getXs() {
+		return this.xs;
+	}
+
+	float[] getYs() {
+		return this.ys;
+	}
+
+	int size() {
+		return this.size;
+	}
+}
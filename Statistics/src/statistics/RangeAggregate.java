@@ -0,0 +1,72 @@
+package statistics;
+
+/**
+ * The aggregated Y-values of the points of a graph within a range
+ * of X-values.
+ * @author Mario Schaeper
+ */
+public final class RangeAggregate {
+	private final int count;
+	private final double sum;
+	private final double minimum;
+	private final double maximum;
+
+	protected RangeAggregate(
+			int count,
+			double sum,
+			double minimum,
+			double maximum) {
+		this.count = count;
+		this.sum = sum;
+		this.minimum = count == 0 ? Double.NaN : minimum;
+		this.maximum = count == 0 ? Double.NaN : maximum;
+	}
+
+	/**
+	 * Returns the amount of points within the range.
+	 * @return the amount of points within the range
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sum of the Y-values within the range.
+	 * @return the sum of the Y-values within the range
+	 */
+	public double getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Returns the smallest Y-value within the range.
+	 * @return the minimum or <b>NaN</b> if the range is empty
+	 */
+	public double getMinimum() {
+		return this.minimum;
+	}
+
+	/**
+	 * Returns the largest Y-value within the range.
+	 * @return the maximum or <b>NaN</b> if the range is empty
+	 */
+	public double getMaximum() {
+		return this.maximum;
+	}
+
+	/**
+	 * Returns the mean of the Y-values within the range.
+	 * @return the mean or <b>NaN</b> if the range is empty
+	 */
+	public double getMean() {
+		return this.count == 0 ? Double.NaN : this.sum / this.count;
+	}
+
+	@Override
+	public String toString() {
+		return "RangeAggregate[count=" + this.count
+				+ ", sum=" + this.sum
+				+ ", min=" + this.minimum
+				+ ", max=" + this.maximum + "]";
+	}
+}
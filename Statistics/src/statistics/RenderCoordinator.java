@@ -0,0 +1,275 @@
+package statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+/**
+ * Schedules the rendering of many {@link LineGraph LineGraphs} within a
+ * shared time budget per frame.<br/>
+ * Registered line graphs no longer rebuild their groups on their own,
+ * but report changes to the coordinator. On every pulse the coordinator
+ * renders the pending line graphs until the budget is exhausted,
+ * starting with visible ones and among those with the ones waiting the
+ * longest. Line graphs which miss their slot are rendered on a later
+ * pulse, coalescing all changes made in the meantime. At least one line
+ * graph is rendered on every pulse, so that none starves.<br/>
+ * Every line graph is registered with the {@link #getDefault() default}
+ * coordinator when it is created. Line graphs are only weakly referenced,
+ * so that discarded ones do not have to be unregistered. The coordinator
+ * only listens to pulses while renders are pending, so that idle line
+ * graphs cost nothing. Failed renders are dropped, like the renders of
+ * unregistered line graphs.
+ * @author Mario Schaeper
+ */
+public class RenderCoordinator {
+	/**
+	 * The default budget of 8 milliseconds leaves half of a 60 Hz frame
+	 * to layout and painting.
+	 */
+	public static final long DEFAULT_FRAME_BUDGET = 8_000_000;
+	private static RenderCoordinator defaultCoordinator = null;
+	private final Map<LineGraph, Entry> entries =
+			Collections.synchronizedMap(new WeakHashMap<>());
+	private final AnimationTimer timer;
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private volatile boolean stopped = false;
+	private volatile long frameBudget;
+	private volatile RenderListener listener = null;
+
+	/**
+	 * The scheduling state of a registered line graph.
+	 */
+	private static final class Entry {
+		private final AtomicLong pendingSince = new AtomicLong(0);
+		private volatile long renders = 0;
+		private volatile long deferrals = 0;
+		private volatile long lastStaleness = 0;
+		private volatile long maximumStaleness = 0;
+		private volatile long totalStaleness = 0;
+		private volatile long renderTime = 0;
+		private LineGraph graph;
+		private boolean visible;
+		private long since;
+	}
+
+	/**
+	 * Creates a coordinator with the given budget per frame.
+	 * @param frameBudget the time per frame in nanoseconds
+	 * 	to spend rendering
+	 */
+	public RenderCoordinator(long frameBudget) {
+		this.setFrameBudget(frameBudget);
+		this.timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				RenderCoordinator.this.pulse();
+			}
+		};
+	}
+
+	/**
+	 * Returns the coordinator every line graph is registered with
+	 * when it is created.<br/>
+	 * It uses the {@link #DEFAULT_FRAME_BUDGET default budget}.
+	 * @return the default coordinator
+	 */
+	public static synchronized RenderCoordinator getDefault() {
+		if (defaultCoordinator == null) {
+			defaultCoordinator = new RenderCoordinator(DEFAULT_FRAME_BUDGET);
+		}
+		return defaultCoordinator;
+	}
+
+	/**
+	 * Registers a line graph, which from then on is rendered
+	 * by this coordinator.
+	 * @param graph the line graph to register
+	 */
+	public void register(LineGraph graph) {
+		final RenderCoordinator previous = graph.getRenderCoordinator();
+		if (previous == this) {
+			return;
+		}
+		if (previous != null) {
+			previous.entries.remove(graph);
+		}
+		this.entries.put(graph, new Entry());
+		graph.setRenderCoordinator(this);
+	}
+
+	/**
+	 * Unregisters a line graph, which from then on renders on its own.
+	 * @param graph the line graph to unregister
+	 */
+	public void unregister(LineGraph graph) {
+		if (this.entries.remove(graph) != null) {
+			graph.setRenderCoordinator(null);
+		}
+	}
+
+	/**
+	 * Stops rendering. Registered line graphs keep their
+	 * pending changes until they are unregistered.
+	 */
+	public void stop() {
+		this.stopped = true;
+		Platform.runLater(this.timer::stop);
+	}
+
+	/**
+	 * Returns the time per frame to spend rendering.
+	 * @return the budget in nanoseconds
+	 */
+	public long getFrameBudget() {
+		return this.frameBudget;
+	}
+
+	/**
+	 * Changes the time per frame to spend rendering.
+	 * @param frameBudget the budget in nanoseconds
+	 */
+	public void setFrameBudget(long frameBudget) {
+		if (frameBudget <= 0) {
+			throw new IllegalArgumentException(
+					"The frame budget has to be positive");
+		}
+		this.frameBudget = frameBudget;
+	}
+
+	/**
+	 * Sets a listener, which is notified of every render.<br/>
+	 * <b>null</b> can be used to unset the listener.
+	 * @param listener the listener to set
+	 */
+	public void setRenderListener(RenderListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the statistics of a registered line graph.
+	 * @param graph the line graph
+	 * @return the statistics or <b>null</b> if the line graph
+	 * 	is not registered
+	 */
+	public RenderStatistics getStatistics(LineGraph graph) {
+		final Entry entry = this.entries.get(graph);
+		if (entry == null) {
+			return null;
+		}
+		return new RenderStatistics(
+				entry.renders,
+				entry.deferrals,
+				entry.lastStaleness,
+				entry.maximumStaleness,
+				entry.totalStaleness,
+				entry.renderTime);
+	}
+
+	/**
+	 * Marks a line graph as changed. May be called from any thread.
+	 */
+	void requestRender(LineGraph graph) {
+		final Entry entry = this.entries.get(graph);
+		if (entry != null
+				&& entry.pendingSince.compareAndSet(0, System.nanoTime())
+				&& !this.stopped
+				&& this.running.compareAndSet(false, true)) {
+			Platform.runLater(this.timer::start);
+		}
+	}
+
+	private void pulse() {
+		final long start = System.nanoTime();
+		final ArrayList<Entry> pending = new ArrayList<>();
+		synchronized (this.entries) {
+			for (Map.Entry<LineGraph, Entry> registered
+					: this.entries.entrySet()) {
+				final Entry entry = registered.getValue();
+				entry.since = entry.pendingSince.get();
+				if (entry.since != 0) {
+					// Held only during the pulse, so that the entry does
+					// not keep its line graph reachable
+					entry.graph = registered.getKey();
+					entry.visible = RenderCoordinator.isVisible(entry.graph);
+					pending.add(entry);
+				}
+			}
+		}
+		try {
+			this.render(pending, start);
+		} finally {
+			for (Entry entry : pending) {
+				entry.graph = null;
+			}
+		}
+		this.stopIfIdle();
+	}
+
+	/**
+	 * Stops listening to pulses once no render is pending.<br/>
+	 * The running flag is cleared before looking for pending renders,
+	 * so that a render requested concurrently either is found here or
+	 * starts the timer again.
+	 */
+	private void stopIfIdle() {
+		this.running.set(false);
+		synchronized (this.entries) {
+			for (Entry entry : this.entries.values()) {
+				if (entry.pendingSince.get() != 0) {
+					this.running.compareAndSet(false, true);
+					return;
+				}
+			}
+		}
+		this.timer.stop();
+	}
+
+	private void render(ArrayList<Entry> pending, long start) {
+		pending.sort((first, second) -> first.visible != second.visible
+				? (first.visible ? -1 : 1)
+				: Long.compare(first.since, second.since));
+		for (int i = 0; i < pending.size(); i++) {
+			final Entry entry = pending.get(i);
+			final long now = System.nanoTime();
+			if (i > 0 && now - start >= this.frameBudget) {
+				for (int j = i; j < pending.size(); j++) {
+					pending.get(j).deferrals++;
+				}
+				return;
+			}
+			final long since = entry.pendingSince.getAndSet(0);
+			try {
+				entry.graph.render();
+			} catch (Exception e) {}
+			final long staleness = now - since;
+			final long duration = System.nanoTime() - now;
+			entry.renders++;
+			entry.lastStaleness = staleness;
+			entry.totalStaleness += staleness;
+			entry.maximumStaleness = Math.max(
+					entry.maximumStaleness, staleness);
+			entry.renderTime += duration;
+			final RenderListener listener = this.listener;
+			if (listener != null) {
+				listener.rendered(entry.graph, staleness, duration);
+			}
+		}
+	}
+
+	private static boolean isVisible(LineGraph graph) {
+		final Scene scene = graph.getScene();
+		if (!graph.isVisible() || scene == null) {
+			return false;
+		}
+		final Window window = scene.getWindow();
+		return window != null && window.isShowing();
+	}
+}
@@ -0,0 +1,19 @@
+package statistics;
+
+/**
+ * Is notified whenever a {@link RenderCoordinator RenderCoordinator}
+ * renders a {@link LineGraph LineGraph}.
+ * @author Mario Schaeper
+ */
+public interface RenderListener {
+	/**
+	 * Called on the JavaFX application thread after a line graph
+	 * was rendered.
+	 *
+	 * @param graph the rendered line graph
+	 * @param staleness the time in nanoseconds between the first change
+	 * 	since the previous render and the start of this render
+	 * @param duration the time in nanoseconds the render took
+	 */
+	void rendered(LineGraph graph, long staleness, long duration);
+}
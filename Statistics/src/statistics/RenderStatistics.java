@@ -0,0 +1,91 @@
+package statistics;
+
+/**
+ * Describes how timely a {@link LineGraph LineGraph} was rendered by a
+ * {@link RenderCoordinator RenderCoordinator}.<br/>
+ * The staleness of a render is the time between the first change
+ * after the previous render and the render itself.
+ * @author Mario Schaeper
+ */
+public final class RenderStatistics {
+	private final long renders;
+	private final long deferrals;
+	private final long lastStaleness;
+	private final long maximumStaleness;
+	private final long totalStaleness;
+	private final long renderTime;
+
+	protected RenderStatistics(
+			long renders,
+			long deferrals,
+			long lastStaleness,
+			long maximumStaleness,
+			long totalStaleness,
+			long renderTime) {
+		this.renders = renders;
+		this.deferrals = deferrals;
+		this.lastStaleness = lastStaleness;
+		this.maximumStaleness = maximumStaleness;
+		this.totalStaleness = totalStaleness;
+		this.renderTime = renderTime;
+	}
+
+	/**
+	 * Returns the amount of renders.
+	 * @return the amount of renders
+	 */
+	public long getRenders() {
+		return this.renders;
+	}
+
+	/**
+	 * Returns the amount of pulses, in which a pending render
+	 * was deferred because the budget was exhausted.
+	 * @return the amount of deferrals
+	 */
+	public long getDeferrals() {
+		return this.deferrals;
+	}
+
+	/**
+	 * Returns the staleness of the last render in nanoseconds.
+	 * @return the staleness of the last render
+	 */
+	public long getLastStaleness() {
+		return this.lastStaleness;
+	}
+
+	/**
+	 * Returns the largest staleness of all renders in nanoseconds.
+	 * @return the largest staleness
+	 */
+	public long getMaximumStaleness() {
+		return this.maximumStaleness;
+	}
+
+	/**
+	 * Returns the mean staleness of all renders in nanoseconds.
+	 * @return the mean staleness or <b>0</b> if nothing was rendered
+	 */
+	public long getMeanStaleness() {
+		return this.renders == 0 ? 0 : this.totalStaleness / this.renders;
+	}
+
+	/**
+	 * Returns the time spent rendering in nanoseconds.
+	 * @return the time spent rendering
+	 */
+	public long getRenderTime() {
+		return this.renderTime;
+	}
+
+	@Override
+	public String toString() {
+		return "RenderStatistics[renders=" + this.renders
+				+ ", deferrals=" + this.deferrals
+				+ ", lastStaleness=" + this.lastStaleness
+				+ ", maximumStaleness=" + this.maximumStaleness
+				+ ", meanStaleness=" + this.getMeanStaleness()
+				+ ", renderTime=" + this.renderTime + "]";
+	}
+}
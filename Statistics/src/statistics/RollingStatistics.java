@@ -0,0 +1,304 @@
+package statistics;
+
+/**
+ * Maintains statistics over the most recent values of a series.<br/>
+ * Every value is added in constant or logarithmic time, so that the
+ * statistics can follow high-rate feeds without recomputing the window:
+ * <ul>
+ * <li>mean and variance are kept with Welford's algorithm,</li>
+ * <li>minimum and maximum are kept in monotonic deques,</li>
+ * <li>percentiles are approximated by a log-linear histogram,
+ * 	whose cumulative counts are kept in a Fenwick tree.</li>
+ * </ul>
+ * The histogram needs no bounds: a value is bucketed by the sign,
+ * the exponent and the leading mantissa bits of its <code>float</code>
+ * representation, which preserves the order of values and keeps the
+ * relative error of a bucket constant. Only values beyond the range of
+ * <code>float</code> share the outermost buckets.
+ * @author Mario Schaeper
+ */
+public class RollingStatistics {
+	private final double[] window;
+	private final int[] windowBuckets;
+	private final MonotonicDeque minimum;
+	private final MonotonicDeque maximum;
+	private final int[] tree;
+	private final int shift;
+	private long count = 0;
+	private int size = 0;
+	private double mean = 0;
+	private double squaredDistance = 0;
+
+	/**
+	 * A deque of window values, whose head is always the extreme value
+	 * of the window.
+	 */
+	private static final class MonotonicDeque {
+		private final long[] indices;
+		private final double[] values;
+		private final boolean ascending;
+		private int head = 0;
+		private int size = 0;
+
+		private MonotonicDeque(int capacity, boolean ascending) {
+			this.indices = new long[capacity];
+			this.values = new double[capacity];
+			this.ascending = ascending;
+		}
+
+		private void add(long index, double value, int windowSize) {
+			final int capacity = this.values.length;
+			while (this.size > 0
+					&& this.indices[this.head] <= index - windowSize) {
+				this.head = (this.head + 1) % capacity;
+				this.size--;
+			}
+			while (this.size > 0) {
+				double last = this.values[
+						(this.head + this.size - 1) % capacity];
+				if (this.ascending ? last < value : last > value) {
+					break;
+				}
+				this.size--;
+			}
+			int tail = (this.head + this.size) % capacity;
+			this.indices[tail] = index;
+			this.values[tail] = value;
+			this.size++;
+		}
+
+		private double get() {
+			return this.size == 0 ? Double.NaN : this.values[this.head];
+		}
+	}
+
+	/**
+	 * Creates statistics over the last <code>windowSize</code> values,
+	 * approximating percentiles with a relative error below 1%.
+	 * @param windowSize the amount of values to consider
+	 */
+	public RollingStatistics(int windowSize) {
+		this(windowSize, 6);
+	}
+
+	/**
+	 * Creates statistics over the last <code>windowSize</code> values.
+	 * @param windowSize the amount of values to consider
+	 * @param precision the amount of mantissa bits distinguishing the
+	 * 	buckets of the percentile histogram, between <b>1</b> and
+	 * 	<b>10</b>. Percentiles have a relative error below
+	 * 	<code>2^-(precision + 1)</code>.
+	 */
+	public RollingStatistics(int windowSize, int precision) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException(
+					"The window has to contain at least one value");
+		}
+		if (precision < 1 || precision > 10) {
+			throw new IllegalArgumentException(
+					"The precision has to be between 1 and 10");
+		}
+		this.window = new double[windowSize];
+		this.windowBuckets = new int[windowSize];
+		this.minimum = new MonotonicDeque(windowSize, true);
+		this.maximum = new MonotonicDeque(windowSize, false);
+		// Sign and exponent of a float take 9 bits
+		this.tree = new int[(1 << (9 + precision)) + 1];
+		this.shift = 23 - precision;
+	}
+
+	/**
+	 * Adds a value, removing the oldest one if the window is full.
+	 * @param value the value to add
+	 */
+	public void add(double value) {
+		final int slot = (int)(this.count % this.window.length);
+		if (this.size == this.window.length) {
+			this.removeFromMoments(this.window[slot]);
+			this.updateBucket(this.windowBuckets[slot], -1);
+		} else {
+			this.size++;
+		}
+		this.addToMoments(value);
+		this.window[slot] = value;
+		this.windowBuckets[slot] = this.getBucket(value);
+		this.updateBucket(this.windowBuckets[slot], 1);
+		this.minimum.add(this.count, value, this.window.length);
+		this.maximum.add(this.count, value, this.window.length);
+		this.count++;
+	}
+
+	/**
+	 * Returns the amount of values currently in the window.
+	 * @return the amount of values in the window
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the amount of values in a full window.
+	 * @return the size of the window
+	 */
+	public int getWindowSize() {
+		return this.window.length;
+	}
+
+	/**
+	 * Returns the mean of the window.
+	 * @return the mean or <b>NaN</b> if the window is empty
+	 */
+	public double getMean() {
+		return this.size == 0 ? Double.NaN : this.mean;
+	}
+
+	/**
+	 * Returns the population variance of the window.
+	 * @return the variance or <b>NaN</b> if the window is empty
+	 */
+	public double getVariance() {
+		return this.size == 0
+				? Double.NaN
+				: Math.max(0, this.squaredDistance / this.size);
+	}
+
+	/**
+	 * Returns the population standard deviation of the window.
+	 * @return the standard deviation or <b>NaN</b> if the window is empty
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(this.getVariance());
+	}
+
+	/**
+	 * Returns the smallest value of the window.
+	 * @return the minimum or <b>NaN</b> if the window is empty
+	 */
+	public double getMinimum() {
+		return this.minimum.get();
+	}
+
+	/**
+	 * Returns the largest value of the window.
+	 * @return the maximum or <b>NaN</b> if the window is empty
+	 */
+	public double getMaximum() {
+		return this.maximum.get();
+	}
+
+	/**
+	 * Returns an approximation of a percentile of the window.<br/>
+	 * The result is the center of the bucket containing the percentile,
+	 * restricted to the windows minimum and maximum.
+	 * @param percentile the percentile between <b>0</b> and <b>100</b>
+	 * @return the percentile or <b>NaN</b> if the window is empty
+	 */
+	public double getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException(
+					"The percentile has to be between 0 and 100");
+		}
+		if (this.size == 0) {
+			return Double.NaN;
+		}
+		int rank = Math.max(1, (int)Math.ceil(percentile / 100 * this.size));
+		int bucket = this.findBucket(rank);
+		double lower = this.getValue(bucket << this.shift);
+		double upper = this.getValue(((bucket + 1) << this.shift) - 1);
+		double value = (lower + upper) / 2;
+		if (Double.isNaN(value)) {
+			// The outermost buckets contain infinity and NaN
+			value = Double.isNaN(lower) ? upper : lower;
+		}
+		return Math.min(Math.max(value, this.getMinimum()), this.getMaximum());
+	}
+
+	/**
+	 * Returns the value of a {@link Statistic Statistic}.
+	 * @param statistic the statistic to return
+	 * @return the value of the statistic
+	 */
+	public double get(Statistic statistic) {
+		switch (statistic) {
+			case MEAN:
+				return this.getMean();
+			case UPPER_DEVIATION:
+				return this.getMean() + this.getStandardDeviation();
+			case LOWER_DEVIATION:
+				return this.getMean() - this.getStandardDeviation();
+			case MINIMUM:
+				return this.getMinimum();
+			case MAXIMUM:
+				return this.getMaximum();
+			case MEDIAN:
+				return this.getPercentile(50);
+			case PERCENTILE_95:
+				return this.getPercentile(95);
+			case PERCENTILE_99:
+				return this.getPercentile(99);
+			default:
+				throw new IllegalArgumentException(
+						"Unknown statistic: " + statistic);
+		}
+	}
+
+	private void addToMoments(double value) {
+		double delta = value - this.mean;
+		this.mean += delta / this.size;
+		this.squaredDistance += delta * (value - this.mean);
+	}
+
+	private void removeFromMoments(double value) {
+		if (this.size == 1) {
+			this.mean = 0;
+			this.squaredDistance = 0;
+			return;
+		}
+		double delta = value - this.mean;
+		this.mean -= delta / (this.size - 1);
+		this.squaredDistance -= delta * (value - this.mean);
+	}
+
+	/**
+	 * Maps a value to its bucket by the leading bits of its float
+	 * representation. Negative values have all bits inverted and
+	 * positive values their sign bit, so that the unsigned order
+	 * of the bits matches the order of the values.
+	 */
+	private int getBucket(double value) {
+		final int bits = Float.floatToIntBits((float)value);
+		return (bits ^ ((bits >> 31) | Integer.MIN_VALUE)) >>> this.shift;
+	}
+
+	/**
+	 * Inverts the mapping of {@link #getBucket(double) getBucket}
+	 * for the sortable bits of a float.
+	 */
+	private double getValue(int sortable) {
+		return Float.intBitsToFloat(sortable < 0
+				? sortable ^ Integer.MIN_VALUE
+				: ~sortable);
+	}
+
+	private void updateBucket(int bucket, int delta) {
+		for (int i = bucket + 1; i < this.tree.length; i += i & -i) {
+			this.tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Returns the first bucket whose cumulative count reaches the rank.
+	 */
+	private int findBucket(int rank) {
+		int position = 0;
+		int step = Integer.highestOneBit(this.tree.length - 1);
+		for (; step > 0; step >>= 1) {
+			int next = position + step;
+			if (next < this.tree.length && this.tree[next] < rank) {
+				position = next;
+				rank -= this.tree[next];
+			}
+		}
+		return Math.min(position, this.tree.length - 2);
+	}
+}
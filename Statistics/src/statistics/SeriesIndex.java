@@ -0,0 +1,266 @@
+package statistics;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the coordinates of a graph in primitive arrays together with a
+ * segment tree over the Y-values, which is maintained on every append.<br/>
+ * As long as points are appended in ascending order of their X-values,
+ * aggregates over a range of X-values are answered in <i>O(log n)</i>.
+ * Once a point is appended out of order, queries fall back
+ * to a linear scan.
+ * @author Mario Schaeper
+ */
+final class SeriesIndex {
+	private static final int INITIAL_CAPACITY = 16;
+	private double[] xs;
+	private double[] ys;
+	private double[] minima;
+	private double[] maxima;
+	private double[] sums;
+	private int capacity;
+	private int size = 0;
+	private boolean sorted = true;
+
+	SeriesIndex() {
+		this.grow(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates an index over existing points in <i>O(n)</i>, building the
+	 * segment tree bottom-up. The arrays are taken over without copying
+	 * and must not be modified afterwards.
+	 * @param xs the X-values
+	 * @param ys the Y-values
+	 * @param count the amount of points in the arrays
+	 */
+	SeriesIndex(double[] xs, double[] ys, int count) {
+		if (count < 0 || count > xs.length || count > ys.length) {
+			throw new IllegalArgumentException(
+					"The arrays have to contain count points");
+		}
+		this.xs = xs;
+		this.ys = ys;
+		this.size = count;
+		for (int i = 1; i < count && this.sorted; i++) {
+			this.sorted = xs[i] >= xs[i - 1];
+		}
+		this.build(count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1);
+	}
+
+	/**
+	 * Appends a point in <i>O(log n)</i> amortized time.
+	 * @param x the X-value
+	 * @param y the Y-value
+	 */
+	void add(double x, double y) {
+		if (this.size == this.getLimit()) {
+			this.grow(this.size == this.capacity
+					? this.capacity << 1
+					: this.capacity);
+		}
+		if (this.size > 0 && x < this.xs[this.size - 1]) {
+			this.sorted = false;
+		}
+		this.xs[this.size] = x;
+		this.ys[this.size] = y;
+		this.setLeaf(this.size, y);
+		this.size++;
+	}
+
+	/**
+	 * Ensures capacity for further points, so that bulk appends
+	 * do not grow the arrays repeatedly.
+	 * @param additional the amount of points about to be added
+	 */
+	void reserve(int additional) {
+		int required = this.size + additional;
+		if (required > this.getLimit()) {
+			this.grow(Math.max(
+					this.capacity,
+					Integer.highestOneBit(required - 1) << 1));
+		}
+	}
+
+	/**
+	 * Returns the amount of points that fit without growing. Adopted
+	 * arrays may be shorter or longer than the capacity of the tree.
+	 */
+	private int getLimit() {
+		return Math.min(
+				this.capacity,
+				Math.min(this.xs.length, this.ys.length));
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	boolean isSorted() {
+		return this.sorted;
+	}
+
+	/**
+	 * Returns the backing array of X-values, valid up to {@link #size()}.
+	 */
+	double[] getXs() {
+		return this.xs;
+	}
+
+	/**
+	 * Returns the backing array of Y-values, valid up to {@link #size()}.
+	 */
+	double[] getYs() {
+		return this.ys;
+	}
+
+	double getX(int index) {
+		return this.xs[index];
+	}
+
+	double getY(int index) {
+		return this.ys[index];
+	}
+
+	/**
+	 * Aggregates the Y-values of all points with
+	 * <code>xStart &lt;= x &lt;= xEnd</code>.
+	 * @param xStart the smallest X-value to include
+	 * @param xEnd the largest X-value to include
+	 * @return the aggregate
+	 */
+	RangeAggregate aggregate(double xStart, double xEnd) {
+		if (!this.sorted) {
+			return this.scan(xStart, xEnd);
+		}
+		return this.query(
+				this.lowerBound(xStart),
+				this.upperBound(xEnd));
+	}
+
+	/**
+	 * Returns the index of the first point with an X-value
+	 * not smaller than <code>x</code>.
+	 */
+	int lowerBound(double x) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.xs[middle] < x) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the first point with an X-value
+	 * greater than <code>x</code>.
+	 */
+	int upperBound(double x) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.xs[middle] <= x) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Aggregates the points with indices in <code>[from, to)</code>.
+	 */
+	private RangeAggregate query(int from, int to) {
+		double minimum = Double.POSITIVE_INFINITY;
+		double maximum = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		int count = Math.max(0, to - from);
+		for (int low = from + this.capacity, high = to + this.capacity;
+				low < high;
+				low >>= 1, high >>= 1) {
+			if ((low & 1) == 1) {
+				minimum = Math.min(minimum, this.minima[low]);
+				maximum = Math.max(maximum, this.maxima[low]);
+				sum += this.sums[low++];
+			}
+			if ((high & 1) == 1) {
+				high--;
+				minimum = Math.min(minimum, this.minima[high]);
+				maximum = Math.max(maximum, this.maxima[high]);
+				sum += this.sums[high];
+			}
+		}
+		return new RangeAggregate(count, sum, minimum, maximum);
+	}
+
+	private RangeAggregate scan(double xStart, double xEnd) {
+		double minimum = Double.POSITIVE_INFINITY;
+		double maximum = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (this.xs[i] >= xStart && this.xs[i] <= xEnd) {
+				minimum = Math.min(minimum, this.ys[i]);
+				maximum = Math.max(maximum, this.ys[i]);
+				sum += this.ys[i];
+				count++;
+			}
+		}
+		return new RangeAggregate(count, sum, minimum, maximum);
+	}
+
+	private void setLeaf(int index, double y) {
+		int node = index + this.capacity;
+		this.minima[node] = y;
+		this.maxima[node] = y;
+		this.sums[node] = y;
+		for (node >>= 1; node > 0; node >>= 1) {
+			this.combine(node);
+		}
+	}
+
+	private void combine(int node) {
+		int left = node << 1;
+		int right = left | 1;
+		this.minima[node] = Math.min(this.minima[left], this.minima[right]);
+		this.maxima[node] = Math.max(this.maxima[left], this.maxima[right]);
+		this.sums[node] = this.sums[left] + this.sums[right];
+	}
+
+	private void allocate(int capacity) {
+		this.capacity = capacity;
+		this.minima = new double[capacity << 1];
+		this.maxima = new double[capacity << 1];
+		this.sums = new double[capacity << 1];
+		Arrays.fill(this.minima, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.maxima, Double.NEGATIVE_INFINITY);
+	}
+
+	private void grow(int capacity) {
+		this.xs = Arrays.copyOf(
+				this.xs == null ? new double[0] : this.xs, capacity);
+		this.ys = Arrays.copyOf(
+				this.ys == null ? new double[0] : this.ys, capacity);
+		this.build(capacity);
+	}
+
+	/**
+	 * Rebuilds the segment tree over the current points bottom-up.
+	 */
+	private void build(int capacity) {
+		this.allocate(capacity);
+		System.arraycopy(this.ys, 0, this.minima, capacity, this.size);
+		System.arraycopy(this.ys, 0, this.maxima, capacity, this.size);
+		System.arraycopy(this.ys, 0, this.sums, capacity, this.size);
+		for (int node = capacity - 1; node > 0; node--) {
+			this.combine(node);
+		}
+	}
+}
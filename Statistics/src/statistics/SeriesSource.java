@@ -0,0 +1,27 @@
+package statistics;
+
+import java.io.IOException;
+
+/**
+ * Provides the points of a graph on demand, instead of the
+ * {@link LineGraph LineGraph} holding all of them in memory.<br/>
+ * A graph bound to a source only requests the points visible on the
+ * current scale. Requests are made from a background thread.
+ * @author Mario Schaeper
+ */
+public interface SeriesSource {
+	/**
+	 * Returns the points with <code>xStart &lt;= x &lt; xEnd</code>
+	 * in ascending order of their X-values.<br/>
+	 * Points closer to each other than <code>resolution</code> may be
+	 * merged, as long as the extreme Y-values are preserved.
+	 *
+	 * @param xStart the smallest X-value to include
+	 * @param xEnd the X-value to stop at
+	 * @param resolution the X-distance a single pixel represents
+	 * @return array of coordinates
+	 * @throws IOException if the points can not be read
+	 */
+	double[][] getPoints(double xStart, double xEnd, double resolution)
+			throws IOException;
+}
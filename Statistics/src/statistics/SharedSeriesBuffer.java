@@ -0,0 +1,292 @@
+package statistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single producer, single consumer ring buffer of points in a memory
+ * mapped file, through which another process on the same host can feed
+ * a graph.<br/>
+ * The producer and the consumer each own a sequence counter in the file
+ * header. A point is written into its slot before the write sequence is
+ * advanced, and the read sequence is advanced only after the slot was
+ * read, so that neither side needs a lock. Both counters are separated
+ * by a cache line to avoid false sharing.
+ * <pre>
+ *   0  int  magic
+ *   4  int  version
+ *   8  int  capacity (a power of two)
+ *  64  long write sequence
+ * 128  long read sequence
+ * 192  capacity slots of one X- and one Y-value
+ * </pre>
+ * All values are in native byte order.<br/>
+ * The fences of <code>sun.misc.Unsafe</code> are looked up at runtime.
+ * Where they are not available, no buffer can be created or opened.
+ * @author Mario Schaeper
+ */
+public class SharedSeriesBuffer implements Closeable {
+	private static final int MAGIC = 0x4C475342;
+	private static final int VERSION = 1;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int WRITE_OFFSET = 64;
+	private static final int READ_OFFSET = 128;
+	private static final int HEADER_SIZE = 192;
+	private static final int SLOT_SIZE = 16;
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle LOAD_FENCE;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	private long cachedRead;
+	private long cachedWrite;
+
+	static {
+		MethodHandle storeFence = null;
+		MethodHandle loadFence = null;
+		try {
+			final Class<?> type = Class.forName("sun.misc.Unsafe");
+			final Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			final Object unsafe = field.get(null);
+			final MethodType fenceType = MethodType.methodType(void.class);
+			storeFence = MethodHandles.publicLookup()
+					.findVirtual(type, "storeFence", fenceType)
+					.bindTo(unsafe);
+			loadFence = MethodHandles.publicLookup()
+					.findVirtual(type, "loadFence", fenceType)
+					.bindTo(unsafe);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Buffers can not be created or opened without fences
+			storeFence = null;
+			loadFence = null;
+		}
+		STORE_FENCE = storeFence;
+		LOAD_FENCE = loadFence;
+	}
+
+	/**
+	 * Receives the points drained from a buffer.
+	 */
+	public interface PointConsumer {
+		/**
+		 * Accepts a point.
+		 * @param x the X-value
+		 * @param y the Y-value
+		 */
+		void accept(double x, double y);
+	}
+
+	private SharedSeriesBuffer(FileChannel channel, int capacity)
+			throws IOException {
+		this.channel = channel;
+		this.buffer = channel.map(
+				FileChannel.MapMode.READ_WRITE,
+				0,
+				HEADER_SIZE + (long)capacity * SLOT_SIZE);
+		this.buffer.order(ByteOrder.nativeOrder());
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Creates a new, empty buffer in a file.
+	 * @param path the file to create or overwrite
+	 * @param capacity the amount of points the buffer can hold,
+	 * 	which has to be a power of two
+	 * @return the buffer
+	 * @throws IOException if the file can not be created
+	 * @throws UnsupportedOperationException if the runtime
+	 * 	does not provide memory fences
+	 */
+	public static SharedSeriesBuffer create(Path path, int capacity)
+			throws IOException {
+		SharedSeriesBuffer.requireFences();
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1
+				|| capacity > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+			throw new IllegalArgumentException(
+					"The capacity has to be a power of two");
+		}
+		final FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		final SharedSeriesBuffer shared;
+		try {
+			shared = new SharedSeriesBuffer(channel, capacity);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		shared.buffer.putInt(CAPACITY_OFFSET, capacity);
+		shared.buffer.putLong(WRITE_OFFSET, 0);
+		shared.buffer.putLong(READ_OFFSET, 0);
+		shared.buffer.putInt(4, VERSION);
+		SharedSeriesBuffer.storeFence();
+		shared.buffer.putInt(0, MAGIC);
+		return shared;
+	}
+
+	/**
+	 * Opens a buffer created by {@link #create(Path, int) create},
+	 * usually in another process.
+	 * @param path the file of the buffer
+	 * @return the buffer
+	 * @throws IOException if the file can not be opened
+	 * 	or does not contain a buffer
+	 * @throws UnsupportedOperationException if the runtime
+	 * 	does not provide memory fences
+	 */
+	public static SharedSeriesBuffer open(Path path) throws IOException {
+		SharedSeriesBuffer.requireFences();
+		final FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not a shared series buffer: " + path);
+			}
+			final MappedByteBuffer header = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			header.order(ByteOrder.nativeOrder());
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("Not a shared series buffer: " + path);
+			}
+			final int capacity = header.getInt(CAPACITY_OFFSET);
+			if (channel.size() < HEADER_SIZE + (long)capacity * SLOT_SIZE) {
+				throw new IOException("Truncated shared series buffer: " + path);
+			}
+			final SharedSeriesBuffer shared =
+					new SharedSeriesBuffer(channel, capacity);
+			shared.cachedRead = shared.getSequence(READ_OFFSET);
+			shared.cachedWrite = shared.getSequence(WRITE_OFFSET);
+			return shared;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the amount of points the buffer can hold.
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Adds a point. May only be called by the single producer.
+	 * @param x the X-value
+	 * @param y the Y-value
+	 * @return <b>false</b> if the buffer is full
+	 */
+	public boolean offer(double x, double y) {
+		final long write = this.cachedWrite;
+		if (write - this.cachedRead >= this.capacity) {
+			this.cachedRead = this.getSequence(READ_OFFSET);
+			if (write - this.cachedRead >= this.capacity) {
+				return false;
+			}
+		}
+		final int slot = HEADER_SIZE + (int)(write & this.mask) * SLOT_SIZE;
+		this.buffer.putDouble(slot, x);
+		this.buffer.putDouble(slot + 8, y);
+		this.cachedWrite = write + 1;
+		// The slot has to be written before the sequence is published
+		SharedSeriesBuffer.storeFence();
+		this.buffer.putLong(WRITE_OFFSET, this.cachedWrite);
+		return true;
+	}
+
+	/**
+	 * Removes up to <code>limit</code> points, passing them to
+	 * <code>consumer</code> in the order they were added.
+	 * May only be called by the single consumer.
+	 * @param consumer receives the points
+	 * @param limit the maximum amount of points to remove
+	 * @return the amount of removed points
+	 */
+	public int drain(PointConsumer consumer, int limit) {
+		final long read = this.cachedRead;
+		final long available = Math.min(
+				limit, this.getSequence(WRITE_OFFSET) - read);
+		for (long i = 0; i < available; i++) {
+			final int slot = HEADER_SIZE
+					+ (int)((read + i) & this.mask) * SLOT_SIZE;
+			consumer.accept(
+					this.buffer.getDouble(slot),
+					this.buffer.getDouble(slot + 8));
+		}
+		if (available > 0) {
+			this.cachedRead = read + available;
+			// The slots have to be read before they are released
+			SharedSeriesBuffer.loadFence();
+			this.buffer.putLong(READ_OFFSET, this.cachedRead);
+		}
+		return (int)Math.max(0, available);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	private static void requireFences() {
+		if (STORE_FENCE == null || LOAD_FENCE == null) {
+			throw new UnsupportedOperationException(
+					"Memory fences are not available in this runtime");
+		}
+	}
+
+	/**
+	 * Keeps writes before the fence from being reordered
+	 * with writes after it.
+	 */
+	private static void storeFence() {
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Keeps reads before the fence from being reordered
+	 * with reads and writes after it.
+	 */
+	private static void loadFence() {
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads a sequence, so that all writes made before it was
+	 * published are visible afterwards.
+	 */
+	private long getSequence(int offset) {
+		final long sequence = this.buffer.getLong(offset);
+		SharedSeriesBuffer.loadFence();
+		return sequence;
+	}
+}
@@ -0,0 +1,25 @@
+package statistics;
+
+/**
+ * The statistics which can be overlayed onto a graph
+ * of a {@link LineGraph LineGraph}.
+ * @author Mario Schaeper
+ */
+public enum Statistic {
+	/** The mean of the window. */
+	MEAN,
+	/** The mean plus the standard deviation of the window. */
+	UPPER_DEVIATION,
+	/** The mean minus the standard deviation of the window. */
+	LOWER_DEVIATION,
+	/** The smallest value of the window. */
+	MINIMUM,
+	/** The largest value of the window. */
+	MAXIMUM,
+	/** The approximated 50th percentile of the window. */
+	MEDIAN,
+	/** The approximated 95th percentile of the window. */
+	PERCENTILE_95,
+	/** The approximated 99th percentile of the window. */
+	PERCENTILE_99
+}
@@ -0,0 +1,154 @@
+package statistics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+/**
+ * Fetches the visible points of a {@link SeriesSource SeriesSource}
+ * in tiles and keeps the most recently used tiles in a cache.<br/>
+ * A tile covers a fixed amount of pixels at a resolution rounded to a
+ * power of two, so that tiles can be reused while scrolling and
+ * between similar scales. Tiles are fetched on a background thread,
+ * while the cache is only accessed on the JavaFX application thread.
+ * A tile, which could not be fetched, is fetched again by the next
+ * request covering it.
+ * @author Mario Schaeper
+ */
+final class TiledSeries {
+	private static final int TILE_PIXELS = 256;
+	private static final ExecutorService EXECUTOR =
+			Executors.newFixedThreadPool(2, runnable -> {
+				Thread thread = new Thread(runnable, "SeriesSource");
+				thread.setDaemon(true);
+				return thread;
+			});
+	private final SeriesSource source;
+	private final int cacheSize;
+	private final LinkedHashMap<Tile, double[][]> cache;
+	private final HashSet<Tile> pending = new HashSet<>();
+	private ArrayList<Tile> visible = new ArrayList<>();
+	private Consumer<double[][]> consumer = null;
+
+	/**
+	 * Identifies a tile by its resolution level and its position.
+	 */
+	private static final class Tile {
+		private final int level;
+		private final long index;
+
+		private Tile(int level, long index) {
+			this.level = level;
+			this.index = index;
+		}
+
+		private double getWidth() {
+			return TILE_PIXELS * Math.scalb(1.0, this.level);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Tile
+					&& ((Tile)other).level == this.level
+					&& ((Tile)other).index == this.index;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.level + Long.hashCode(this.index);
+		}
+	}
+
+	TiledSeries(SeriesSource source, int cacheSize) {
+		this.source = source;
+		this.cacheSize = cacheSize;
+		this.cache = new LinkedHashMap<Tile, double[][]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Tile, double[][]> eldest) {
+				return this.size() > TiledSeries.this.cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Requests the points between <code>xStart</code> and
+	 * <code>xEnd</code> at the given resolution.<br/>
+	 * The points are passed to <code>consumer</code> on the JavaFX
+	 * application thread, immediately from cached tiles and again
+	 * whenever a missing tile arrives. Earlier requests are superseded.
+	 * Has to be called on the JavaFX application thread.
+	 *
+	 * @param xStart the smallest visible X-value
+	 * @param xEnd the largest visible X-value
+	 * @param resolution the X-distance a single pixel represents
+	 * @param consumer receives the available points
+	 */
+	void request(
+			double xStart, double xEnd,
+			double resolution,
+			Consumer<double[][]> consumer) {
+		final int level = Math.getExponent(
+				Math.max(resolution, Double.MIN_NORMAL));
+		final double width = TILE_PIXELS * Math.scalb(1.0, level);
+		final ArrayList<Tile> tiles = new ArrayList<>();
+		// One tile beyond each side keeps lines to the border intact
+		for (long i = (long)Math.floor(xStart / width) - 1;
+				i <= (long)Math.floor(xEnd / width) + 1;
+				i++) {
+			tiles.add(new Tile(level, i));
+		}
+		this.visible = tiles;
+		this.consumer = consumer;
+		for (Tile tile : tiles) {
+			if (!this.cache.containsKey(tile) && this.pending.add(tile)) {
+				this.fetch(tile);
+			}
+		}
+		consumer.accept(this.assemble(tiles));
+	}
+
+	private void fetch(Tile tile) {
+		final double start = tile.index * tile.getWidth();
+		final double end = start + tile.getWidth();
+		final double resolution = Math.scalb(1.0, tile.level);
+		EXECUTOR.execute(() -> {
+			double[][] points = null;
+			try {
+				points = this.source.getPoints(start, end, resolution);
+			} catch (Exception e) {
+				// A failed tile stays missing until it is requested again
+			}
+			final double[][] result = points;
+			Platform.runLater(() -> {
+				this.pending.remove(tile);
+				if (result != null) {
+					this.cache.put(tile, result);
+					if (this.visible.contains(tile)) {
+						this.consumer.accept(this.assemble(this.visible));
+					}
+				}
+			});
+		});
+	}
+
+	private double[][] assemble(ArrayList<Tile> tiles) {
+		final ArrayList<double[]> points = new ArrayList<>();
+		for (Tile tile : tiles) {
+			final double[][] cached = this.cache.get(tile);
+			if (cached != null) {
+				for (double[] point : cached) {
+					points.add(point);
+				}
+			}
+		}
+		return points.toArray(new double[points.size()][]);
+	}
+}
@@ -0,0 +1,374 @@
+package statistics;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the X-axis of a {@link LineGraph LineGraph} into a time axis
+ * of epoch timestamps.<br/>
+ * Timestamps are <code>long</code> values in a {@link TimeUnit TimeUnit}
+ * and are stored as their offset to an origin. As long as the offset
+ * stays within <code>2^53</code> units, e.g. about 104 days of
+ * nanoseconds, the conversion is exact and so are searches by time.
+ * <br/>
+ * Marks are placed at calendar-friendly intervals, aligned in the
+ * time zone of the axis. Intervals of an hour or more are stepped on the
+ * wall clock, so that marks stay on calendar boundaries across changes
+ * of the offset, e.g. for daylight saving time. Labels are formatted with formatters built
+ * once per axis and cached, so that scrolling only formats new marks.
+ * @author Mario Schaeper
+ */
+public final class TimeAxis {
+	private static final long MAX_EXACT_OFFSET = 1L << 53;
+	private static final int LABEL_CACHE_SIZE = 256;
+	private static final String[] PATTERNS = {
+			"HH:mm:ss.SSSSSSSSS", "HH:mm:ss.SSSSSS",
+			"HH:mm:ss.SSS", "HH:mm:ss", "HH:mm", "MM-dd HH:mm",
+			"yyyy-MM-dd", "yyyy-MM", "yyyy"};
+	private static final Interval[] INTERVALS = {
+			new Interval(ChronoUnit.NANOS, 1, 0),
+			new Interval(ChronoUnit.NANOS, 2, 0),
+			new Interval(ChronoUnit.NANOS, 5, 0),
+			new Interval(ChronoUnit.NANOS, 10, 0),
+			new Interval(ChronoUnit.NANOS, 20, 0),
+			new Interval(ChronoUnit.NANOS, 50, 0),
+			new Interval(ChronoUnit.NANOS, 100, 0),
+			new Interval(ChronoUnit.NANOS, 200, 0),
+			new Interval(ChronoUnit.NANOS, 500, 0),
+			new Interval(ChronoUnit.MICROS, 1, 1),
+			new Interval(ChronoUnit.MICROS, 2, 1),
+			new Interval(ChronoUnit.MICROS, 5, 1),
+			new Interval(ChronoUnit.MICROS, 10, 1),
+			new Interval(ChronoUnit.MICROS, 20, 1),
+			new Interval(ChronoUnit.MICROS, 50, 1),
+			new Interval(ChronoUnit.MICROS, 100, 1),
+			new Interval(ChronoUnit.MICROS, 200, 1),
+			new Interval(ChronoUnit.MICROS, 500, 1),
+			new Interval(ChronoUnit.MILLIS, 1, 2),
+			new Interval(ChronoUnit.MILLIS, 2, 2),
+			new Interval(ChronoUnit.MILLIS, 5, 2),
+			new Interval(ChronoUnit.MILLIS, 10, 2),
+			new Interval(ChronoUnit.MILLIS, 20, 2),
+			new Interval(ChronoUnit.MILLIS, 50, 2),
+			new Interval(ChronoUnit.MILLIS, 100, 2),
+			new Interval(ChronoUnit.MILLIS, 200, 2),
+			new Interval(ChronoUnit.MILLIS, 500, 2),
+			new Interval(ChronoUnit.SECONDS, 1, 3),
+			new Interval(ChronoUnit.SECONDS, 2, 3),
+			new Interval(ChronoUnit.SECONDS, 5, 3),
+			new Interval(ChronoUnit.SECONDS, 10, 3),
+			new Interval(ChronoUnit.SECONDS, 15, 3),
+			new Interval(ChronoUnit.SECONDS, 30, 3),
+			new Interval(ChronoUnit.MINUTES, 1, 4),
+			new Interval(ChronoUnit.MINUTES, 2, 4),
+			new Interval(ChronoUnit.MINUTES, 5, 4),
+			new Interval(ChronoUnit.MINUTES, 10, 4),
+			new Interval(ChronoUnit.MINUTES, 15, 4),
+			new Interval(ChronoUnit.MINUTES, 30, 4),
+			new Interval(ChronoUnit.HOURS, 1, 5),
+			new Interval(ChronoUnit.HOURS, 2, 5),
+			new Interval(ChronoUnit.HOURS, 3, 5),
+			new Interval(ChronoUnit.HOURS, 6, 5),
+			new Interval(ChronoUnit.HOURS, 12, 5),
+			new Interval(ChronoUnit.DAYS, 1, 6),
+			new Interval(ChronoUnit.DAYS, 2, 6),
+			new Interval(ChronoUnit.WEEKS, 1, 6),
+			new Interval(ChronoUnit.MONTHS, 1, 7),
+			new Interval(ChronoUnit.MONTHS, 3, 7),
+			new Interval(ChronoUnit.MONTHS, 6, 7),
+			new Interval(ChronoUnit.YEARS, 1, 8),
+			new Interval(ChronoUnit.YEARS, 2, 8),
+			new Interval(ChronoUnit.YEARS, 5, 8),
+			new Interval(ChronoUnit.YEARS, 10, 8),
+			new Interval(ChronoUnit.YEARS, 25, 8),
+			new Interval(ChronoUnit.YEARS, 50, 8),
+			new Interval(ChronoUnit.YEARS, 100, 8)};
+	private final TimeUnit unit;
+	private final ZoneId zone;
+	private final long origin;
+	private final DateTimeFormatter[] formatters;
+	private final Map<Long, String> labels;
+	private int labelPattern = -1;
+
+	/**
+	 * A distance between two marks.
+	 */
+	private static final class Interval {
+		private final ChronoUnit unit;
+		private final long amount;
+		private final long nanos;
+		private final int pattern;
+
+		private Interval(ChronoUnit unit, long amount, int pattern) {
+			this.unit = unit;
+			this.amount = amount;
+			this.nanos = unit.getDuration().toNanos() * amount;
+			this.pattern = pattern;
+		}
+	}
+
+	/**
+	 * The marks of a time axis within a range.
+	 */
+	static final class Ticks {
+		private final long[] times;
+		private final double[] xs;
+		private final String[] labels;
+
+		private Ticks(long[] times, double[] xs, String[] labels) {
+			this.times = times;
+			this.xs = xs;
+			this.labels = labels;
+		}
+
+		int size() {
+			return this.times.length;
+		}
+
+		long getTime(int tick) {
+			return this.times[tick];
+		}
+
+		double getX(int tick) {
+			return this.xs[tick];
+		}
+
+		String getLabel(int tick) {
+			return this.labels[tick];
+		}
+	}
+
+	/**
+	 * Creates a time axis.
+	 * @param unit the unit of the timestamps, which has to be
+	 * 	{@link TimeUnit#NANOSECONDS NANOSECONDS},
+	 * 	{@link TimeUnit#MICROSECONDS MICROSECONDS},
+	 * 	{@link TimeUnit#MILLISECONDS MILLISECONDS} or
+	 * 	{@link TimeUnit#SECONDS SECONDS}
+	 * @param zone the time zone to align and format marks in
+	 * @param origin the timestamp X-values are stored relative to,
+	 * 	usually the first timestamp
+	 */
+	public TimeAxis(TimeUnit unit, ZoneId zone, long origin) {
+		if (unit == null || zone == null) {
+			throw new IllegalArgumentException(
+					"The unit and the zone can not be null");
+		}
+		if (unit.compareTo(TimeUnit.SECONDS) > 0) {
+			throw new IllegalArgumentException(
+					"The unit can not be coarser than seconds");
+		}
+		this.unit = unit;
+		this.zone = zone;
+		this.origin = origin;
+		this.formatters = new DateTimeFormatter[PATTERNS.length];
+		for (int i = 0; i < PATTERNS.length; i++) {
+			this.formatters[i] = DateTimeFormatter
+					.ofPattern(PATTERNS[i])
+					.withZone(zone);
+		}
+		this.labels = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+				return this.size() > LABEL_CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * Returns the unit of the timestamps.
+	 * @return the unit of the timestamps
+	 */
+	public TimeUnit getUnit() {
+		return this.unit;
+	}
+
+	/**
+	 * Returns the time zone marks are aligned and formatted in.
+	 * @return the time zone
+	 */
+	public ZoneId getZone() {
+		return this.zone;
+	}
+
+	/**
+	 * Returns the timestamp X-values are stored relative to.
+	 * @return the origin
+	 */
+	public long getOrigin() {
+		return this.origin;
+	}
+
+	/**
+	 * Converts a timestamp to an X-value.
+	 * @param time the timestamp
+	 * @return the X-value
+	 * @throws IllegalArgumentException if the timestamp is too far from
+	 * 	the origin to be stored exactly
+	 */
+	public double toX(long time) {
+		final long offset = time - this.origin;
+		if (offset > MAX_EXACT_OFFSET || offset < -MAX_EXACT_OFFSET
+				|| (time > this.origin) != (offset > 0)) {
+			throw new IllegalArgumentException(
+					"The timestamp is too far from the origin: " + time);
+		}
+		return offset;
+	}
+
+	/**
+	 * Converts an X-value to the nearest timestamp.
+	 * @param x the X-value
+	 * @return the timestamp
+	 */
+	public long toTime(double x) {
+		return this.origin + Math.round(x);
+	}
+
+	/**
+	 * Returns the marks between two X-values.<br/>
+	 * Picks the smallest interval, which results in at most
+	 * <code>maximum</code> marks.
+	 */
+	Ticks getTicks(double xStart, double xEnd, int maximum) {
+		final long start = this.toNanos(this.toTime(Math.min(xStart, xEnd)));
+		final long end = this.toNanos(this.toTime(Math.max(xStart, xEnd)));
+		final long resolution = this.unit.toNanos(1);
+		Interval interval = INTERVALS[INTERVALS.length - 1];
+		for (Interval candidate : INTERVALS) {
+			if (candidate.nanos >= resolution
+					&& (end - start) / candidate.nanos + 1 <= maximum) {
+				interval = candidate;
+				break;
+			}
+		}
+		final boolean wallClock =
+				interval.unit.compareTo(ChronoUnit.HOURS) >= 0;
+		final ArrayList<Long> times = new ArrayList<>();
+		LocalDateTime local = this.align(start, interval);
+		// Within an overlap the offset of the start is preferred,
+		// so that the first mark is not an hour early
+		ZonedDateTime tick = ZonedDateTime.ofLocal(
+				local, this.zone,
+				this.zone.getRules().getOffset(this.toInstant(start)));
+		for (long nanos = this.toNanos(tick);
+				nanos <= end;
+				nanos = this.toNanos(tick)) {
+			if (nanos >= start
+					&& (times.isEmpty() || nanos > times.get(times.size() - 1))
+					&& (!wallClock || !this.isSkipped(local))) {
+				times.add(nanos);
+			}
+			if (wallClock) {
+				local = local.plus(interval.amount, interval.unit);
+				tick = local.atZone(this.zone);
+			} else {
+				tick = tick.plus(interval.amount, interval.unit);
+			}
+		}
+		final long[] result = new long[times.size()];
+		final double[] xs = new double[result.length];
+		final String[] labels = new String[result.length];
+		synchronized (this.labels) {
+			if (this.labelPattern != interval.pattern) {
+				this.labels.clear();
+				this.labelPattern = interval.pattern;
+			}
+			for (int i = 0; i < result.length; i++) {
+				result[i] = this.unit.convert(times.get(i), TimeUnit.NANOSECONDS);
+				xs[i] = result[i] - this.origin;
+				labels[i] = this.getLabel(times.get(i));
+			}
+		}
+		return new Ticks(result, xs, labels);
+	}
+
+	/**
+	 * Returns the last multiple of the interval on the wall clock
+	 * at or before a time.
+	 */
+	private LocalDateTime align(long nanos, Interval interval) {
+		final LocalDateTime time = LocalDateTime.ofInstant(
+				this.toInstant(nanos), this.zone);
+		final int amount = (int)interval.amount;
+		switch (interval.unit) {
+			case NANOS:
+			case MICROS:
+			case MILLIS:
+				return time.truncatedTo(ChronoUnit.SECONDS)
+						.plusNanos(time.getNano() / interval.nanos
+							* interval.nanos);
+			case SECONDS:
+				return time.truncatedTo(ChronoUnit.MINUTES)
+						.plusSeconds(time.getSecond() / amount * amount);
+			case MINUTES:
+				return time.truncatedTo(ChronoUnit.HOURS)
+						.plusMinutes(time.getMinute() / amount * amount);
+			case HOURS:
+				return time.truncatedTo(ChronoUnit.DAYS)
+						.plusHours(time.getHour() / amount * amount);
+			case DAYS:
+				return time.truncatedTo(ChronoUnit.DAYS)
+						.minusDays((time.getDayOfMonth() - 1) % amount);
+			case WEEKS:
+				return time.truncatedTo(ChronoUnit.DAYS)
+						.minusDays(time.getDayOfWeek().getValue() - 1);
+			case MONTHS:
+				return time.truncatedTo(ChronoUnit.DAYS)
+						.withDayOfMonth(1)
+						.withMonth((time.getMonthValue() - 1) / amount
+							* amount + 1);
+			default:
+				return time.truncatedTo(ChronoUnit.DAYS)
+						.withDayOfYear(1)
+						.withYear(Math.floorDiv(time.getYear(), amount)
+							* amount);
+		}
+	}
+
+	/**
+	 * Returns the cached label of a mark or formats it with the
+	 * current pattern.
+	 */
+	private String getLabel(long nanos) {
+		String label = this.labels.get(nanos);
+		if (label == null) {
+			label = this.formatters[this.labelPattern].format(
+					this.toInstant(nanos));
+			this.labels.put(nanos, label);
+		}
+		return label;
+	}
+
+	private long toNanos(long time) {
+		return this.unit.toNanos(time);
+	}
+
+	/**
+	 * Returns whether a wall clock time falls into a gap,
+	 * e.g. when clocks are set forward for daylight saving time.
+	 */
+	private boolean isSkipped(LocalDateTime local) {
+		return this.zone.getRules().getValidOffsets(local).isEmpty();
+	}
+
+	private Instant toInstant(long nanos) {
+		return Instant.ofEpochSecond(
+				Math.floorDiv(nanos, 1_000_000_000L),
+				Math.floorMod(nanos, 1_000_000_000L));
+	}
+
+	private long toNanos(ZonedDateTime time) {
+		return time.toEpochSecond() * 1_000_000_000L + time.getNano();
+	}
+}